@@ -0,0 +1,68 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.aad.msal4jextensions;
+
+import com.microsoft.aad.msal4jextensions.persistence.CacheFileAccessor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures read and write of cache file of different sizes through {@link CacheFileAccessor}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CacheFileAccessorBenchmark {
+
+    @Param({"10240", "1048576", "10485760", "52428800"})
+    int cacheSize;
+
+    private Path directory;
+    private CacheFileAccessor cacheFileAccessor;
+    private byte[] data;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("msal4jextensions-benchmark");
+        cacheFileAccessor = new CacheFileAccessor(directory.resolve("cache.bin").toString());
+
+        data = TestCacheData.create(cacheSize);
+        cacheFileAccessor.write(data);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        cacheFileAccessor.delete();
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public byte[] read() {
+        return cacheFileAccessor.read();
+    }
+
+    @Benchmark
+    public void write() {
+        cacheFileAccessor.write(data);
+    }
+}
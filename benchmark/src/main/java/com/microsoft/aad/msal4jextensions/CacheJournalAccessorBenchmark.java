@@ -0,0 +1,78 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.aad.msal4jextensions;
+
+import com.microsoft.aad.msal4jextensions.persistence.CacheJournalAccessor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures write of a single changed entry through {@link CacheJournalAccessor},
+ * including amortized cost of compaction with default threshold,
+ * to be compared with write of {@link CacheFileAccessorBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CacheJournalAccessorBenchmark {
+
+    @Param({"10240", "1048576"})
+    int cacheSize;
+
+    private Path directory;
+    private CacheJournalAccessor cacheJournalAccessor;
+
+    // two versions of the cache, which differ in one entry
+    private byte[][] cacheVersions;
+    private int cacheVersion;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("msal4jextensions-benchmark");
+        cacheJournalAccessor = new CacheJournalAccessor(directory.resolve("cache.bin").toString(), false, 1024 * 1024);
+
+        String cache = new String(TestCacheData.create(cacheSize), StandardCharsets.UTF_8);
+        cacheVersions = new byte[][]{
+                cache.getBytes(StandardCharsets.UTF_8),
+                cache.replaceFirst("\"cached_at\":\"1600000000\"", "\"cached_at\":\"1600000001\"")
+                        .getBytes(StandardCharsets.UTF_8)};
+        cacheJournalAccessor.write(cacheVersions[0]);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        cacheJournalAccessor.delete();
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public void writeEntryChange() {
+        cacheVersion ^= 1;
+        cacheJournalAccessor.write(cacheVersions[cacheVersion]);
+
+        if (cacheJournalAccessor.isCompactionNeeded()) {
+            cacheJournalAccessor.compact();
+        }
+    }
+}
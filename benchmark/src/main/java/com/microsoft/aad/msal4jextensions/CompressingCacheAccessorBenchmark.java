@@ -0,0 +1,86 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.aad.msal4jextensions;
+
+import com.microsoft.aad.msal4jextensions.persistence.CacheFileAccessor;
+import com.microsoft.aad.msal4jextensions.persistence.CompressingCacheAccessor;
+import com.microsoft.aad.msal4jextensions.persistence.ICacheAccessor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures read and write of cache file through {@link CompressingCacheAccessor} with different compression levels,
+ * "none" being plain {@link CacheFileAccessor}. Stored size is printed on setup,
+ * so the time spent on compression can be weighed against the time of moving stored bytes,
+ * e.g. through D-Bus to the key ring, which is much slower than writing a local file
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompressingCacheAccessorBenchmark {
+
+    @Param({"1024", "10240", "102400", "1048576", "10485760"})
+    int cacheSize;
+
+    @Param({"none", "1", "6"})
+    String compressionLevel;
+
+    // real access tokens end with random signature, which does not compress
+    @Param({"true"})
+    boolean randomSignatures;
+
+    private Path directory;
+    private CacheFileAccessor cacheFileAccessor;
+    private ICacheAccessor cacheAccessor;
+    private byte[] data;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("msal4jextensions-benchmark");
+        cacheFileAccessor = new CacheFileAccessor(directory.resolve("cache.bin").toString());
+        cacheAccessor = "none".equals(compressionLevel) ?
+                cacheFileAccessor :
+                new CompressingCacheAccessor(cacheFileAccessor, Integer.parseInt(compressionLevel));
+
+        data = TestCacheData.create(cacheSize, randomSignatures ? new Random(1) : null);
+        cacheAccessor.write(data);
+        System.out.println("Stored " + Files.size(directory.resolve("cache.bin")) + " of " + data.length + " bytes");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        cacheAccessor.delete();
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public byte[] read() {
+        return cacheAccessor.read();
+    }
+
+    @Benchmark
+    public void write() {
+        cacheAccessor.write(data);
+    }
+}
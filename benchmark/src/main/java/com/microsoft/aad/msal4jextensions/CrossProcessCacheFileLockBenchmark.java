@@ -0,0 +1,74 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.aad.msal4jextensions;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures uncontended cost of one acquire/release cycle of {@link CrossProcessCacheFileLock}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CrossProcessCacheFileLockBenchmark {
+
+    /**
+     * legacy - lock file created and deleted per cycle, persistent - lock file kept open,
+     * shared - persistent lock file with shared read lock
+     */
+    @Param({"legacy", "persistent", "shared"})
+    String lockMode;
+
+    private Path directory;
+    private CrossProcessCacheFileLock lock;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("msal4jextensions-benchmark");
+
+        lock = new CrossProcessCacheFileLock(directory.resolve(".lockfile").toString(),
+                new FixedLockRetryPolicy(100, 60),
+                lockMode.equals("shared"),
+                false,
+                lockMode.equals("persistent"));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(directory.resolve(".lockfile"));
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public void lockUnlock() throws IOException {
+        lock.lock();
+        lock.unlock();
+    }
+
+    @Benchmark
+    public void readLockUnlock() throws IOException {
+        lock.readLock();
+        lock.unlock();
+    }
+}
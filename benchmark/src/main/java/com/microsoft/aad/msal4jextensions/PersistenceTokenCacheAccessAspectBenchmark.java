@@ -0,0 +1,123 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.aad.msal4jextensions;
+
+import com.microsoft.aad.msal4jextensions.persistence.CacheFileAccessor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures full beforeCacheAccess/afterCacheAccess cycle of {@link PersistenceTokenCacheAccessAspect}
+ * against a stub token cache, with cache stored in unprotected file on Linux.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PersistenceTokenCacheAccessAspectBenchmark {
+
+    @Param({"10240", "1048576"})
+    int cacheSize;
+
+    // how read access detects that the cache was changed
+    @Param({"stamp", "generation", "watch"})
+    String changeDetection;
+
+    private Path directory;
+    private PersistenceTokenCacheAccessAspect aspect;
+
+    private StubTokenCacheAccessContext.StubTokenCache tokenCache;
+    private StubTokenCacheAccessContext writeContext;
+    private StubTokenCacheAccessContext readContext;
+
+    // two versions of the cache, write access alternates between them
+    private String[] cacheVersions;
+    private int cacheVersion;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("msal4jextensions-benchmark");
+
+        // stub token cache is replaced by the content of the storage on each reload
+        byte[] data = TestCacheData.create(cacheSize);
+        new CacheFileAccessor(directory.resolve("cache.bin").toString()).write(data);
+
+        PersistenceSettings persistenceSettings = PersistenceSettings.builder("cache.bin", directory)
+                .setMacKeychain("MsalBenchmarkService", "MsalBenchmarkAccount")
+                .setLinuxUseUnprotectedFileAsCacheStorage(true)
+                .setGenerationFileEnabled("generation".equals(changeDetection))
+                .setCacheDirectoryWatchEnabled("watch".equals(changeDetection))
+                .build();
+        aspect = new PersistenceTokenCacheAccessAspect(persistenceSettings);
+
+        String cache = new String(data, StandardCharsets.UTF_8);
+        cacheVersions = new String[]{cache, cache.replace("\"cached_at\":\"1600000000\"", "\"cached_at\":\"1600000001\"")};
+        tokenCache = new StubTokenCacheAccessContext.StubTokenCache(cacheVersions[0]);
+
+        writeContext = new StubTokenCacheAccessContext("client", true, tokenCache);
+        readContext = new StubTokenCacheAccessContext("client", false, tokenCache);
+
+        access(writeContext);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        aspect.stopCacheDirectoryWatch();
+        new CacheFileAccessor(directory.resolve("cache.bin").toString()).delete();
+        Files.deleteIfExists(directory.resolve(".lockfile"));
+        Files.deleteIfExists(directory.resolve("cache.bin.generation"));
+        Files.deleteIfExists(directory);
+    }
+
+    private void access(StubTokenCacheAccessContext context) {
+        aspect.beforeCacheAccess(context);
+        aspect.afterCacheAccess(context);
+    }
+
+    /**
+     * Write access which changes the cache: lock, reload, serialize, write, unlock
+     */
+    @Benchmark
+    public void writeAccess() {
+        aspect.beforeCacheAccess(writeContext);
+        cacheVersion ^= 1;
+        tokenCache.setData(cacheVersions[cacheVersion]);
+        aspect.afterCacheAccess(writeContext);
+    }
+
+    /**
+     * Write access which does not change serialized cache, so the write is skipped
+     */
+    @Benchmark
+    public void writeAccessIdentical() {
+        access(writeContext);
+    }
+
+    /**
+     * Read access of unchanged cache, which skips the reload
+     */
+    @Benchmark
+    public void readAccessUnchanged() {
+        access(readContext);
+    }
+}
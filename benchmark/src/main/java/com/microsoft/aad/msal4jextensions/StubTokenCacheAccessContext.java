@@ -0,0 +1,66 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.aad.msal4jextensions;
+
+import com.microsoft.aad.msal4j.IAccount;
+import com.microsoft.aad.msal4j.ITokenCache;
+import com.microsoft.aad.msal4j.ITokenCacheAccessContext;
+
+/**
+ * Cache access context backed by in-memory serialized cache
+ */
+class StubTokenCacheAccessContext implements ITokenCacheAccessContext {
+
+    private final String clientId;
+    private final boolean cacheChanged;
+    private final StubTokenCache tokenCache;
+
+    static class StubTokenCache implements ITokenCache {
+        private String data;
+
+        StubTokenCache(String data) {
+            this.data = data;
+        }
+
+        void setData(String data) {
+            this.data = data;
+        }
+
+        @Override
+        public void deserialize(String data) {
+            this.data = data;
+        }
+
+        @Override
+        public String serialize() {
+            return data;
+        }
+    }
+
+    StubTokenCacheAccessContext(String clientId, boolean cacheChanged, StubTokenCache tokenCache) {
+        this.clientId = clientId;
+        this.cacheChanged = cacheChanged;
+        this.tokenCache = tokenCache;
+    }
+
+    @Override
+    public ITokenCache tokenCache() {
+        return tokenCache;
+    }
+
+    @Override
+    public String clientId() {
+        return clientId;
+    }
+
+    @Override
+    public IAccount account() {
+        return null;
+    }
+
+    @Override
+    public boolean hasCacheChanged() {
+        return cacheChanged;
+    }
+}
@@ -0,0 +1,59 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.aad.msal4jextensions;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Random;
+
+/**
+ * Generates serialized token cache of up to given size, made of access token entries
+ */
+final class TestCacheData {
+
+    private static final String ENTRY_FORMAT = "\"%08d-home-account-login.microsoftonline.com-accesstoken-client-" +
+            "tenant-scope\":{\"home_account_id\":\"%08d.tenant\",\"environment\":\"login.microsoftonline.com\"," +
+            "\"credential_type\":\"AccessToken\",\"client_id\":\"client\",\"secret\":\"%s\"," +
+            "\"realm\":\"tenant\",\"target\":\"scope\",\"cached_at\":\"1600000000\"," +
+            "\"expires_on\":\"1600003600\",\"extended_expires_on\":\"1600003600\"}";
+
+    private static final String SECRET = "eyJ0eXAiOiJKV1QiLCJhbGciOiJSUzI1NiJ9" +
+            ".eyJhdWQiOiJodHRwczovL2dyYXBoLm1pY3Jvc29mdC5jb20iLCJpc3MiOiJodHRwczovL3N0cy53aW5kb3dzLm5ldC8ifQ";
+
+    private TestCacheData() {
+    }
+
+    static byte[] create(int size) {
+        return create(size, null);
+    }
+
+    /**
+     * @param random If not null, each secret ends with a random signature, as real tokens do,
+     *               otherwise all secrets are the same, which makes the cache unrealistically compressible
+     */
+    static byte[] create(int size, Random random) {
+        StringBuilder builder = new StringBuilder(size + 1024);
+        builder.append("{\"AccessToken\":{");
+
+        for (int i = 0; ; i++) {
+            String secret = random == null ? SECRET : SECRET + "." + createSignature(random);
+            String entry = (i > 0 ? "," : "") + String.format(ENTRY_FORMAT, i, i, secret);
+            if (builder.length() + entry.length() + 2 > size) {
+                break;
+            }
+            builder.append(entry);
+        }
+        builder.append("}}");
+
+        return builder.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String createSignature(Random random) {
+        // RS256 signature
+        byte[] signature = new byte[256];
+        random.nextBytes(signature);
+
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(signature);
+    }
+}
@@ -0,0 +1,83 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.aad.msal4jextensions;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Lock retry policy which tunes delay between attempts from observed lock hold times.
+ * Delay follows moving average of the time the lock is held, bounded by min and max values,
+ * so short critical sections are retried quickly and long ones do not waste CPU and syscalls on polling.
+ * Delay is randomized between half and full of that value (jitter), but is not less than min value.
+ * The policy keeps state of the lock it is used for, so it should be set with
+ * {@link PersistenceSettings.Builder#setLockRetryPolicyFactory(java.util.function.Supplier)}.
+ */
+public class AdaptiveLockRetryPolicy implements ILockRetryPolicy {
+
+    // weight of the latest observation in moving average of lock hold time
+    private static final double SMOOTHING_FACTOR = 0.2;
+
+    private int minDelayMilliseconds;
+    private int maxDelayMilliseconds;
+    private int retryNumber;
+
+    private volatile double averageHoldMilliseconds;
+
+    /**
+     * Constructor
+     *
+     * @param minDelayMilliseconds Min delay between retries in ms, must be 1 or more.
+     * @param maxDelayMilliseconds Max delay between retries in ms, must be minDelayMilliseconds or more.
+     * @param retryNumber          Number of retries, must be 1 or more.
+     */
+    public AdaptiveLockRetryPolicy(int minDelayMilliseconds, int maxDelayMilliseconds, int retryNumber) {
+        if (minDelayMilliseconds < 1) {
+            throw new IllegalArgumentException("minDelayMilliseconds value should be more than 0");
+        }
+        if (maxDelayMilliseconds < minDelayMilliseconds) {
+            throw new IllegalArgumentException(
+                    "maxDelayMilliseconds value should not be less than minDelayMilliseconds");
+        }
+        if (retryNumber < 1) {
+            throw new IllegalArgumentException("retryNumber value should be more than 0");
+        }
+        this.minDelayMilliseconds = minDelayMilliseconds;
+        this.maxDelayMilliseconds = maxDelayMilliseconds;
+        this.retryNumber = retryNumber;
+
+        averageHoldMilliseconds = minDelayMilliseconds;
+    }
+
+    @Override
+    public int getRetryNumber() {
+        return retryNumber;
+    }
+
+    @Override
+    public long getRetryDelayMilliseconds(int retryCount) {
+        long delay = Math.max(minDelayMilliseconds,
+                Math.min(maxDelayMilliseconds, Math.round(averageHoldMilliseconds)));
+
+        // jitter does not go below min delay, which is at least 1 ms
+        return Math.max(minDelayMilliseconds, delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1));
+    }
+
+    @Override
+    public long getTimeoutMilliseconds() {
+        return (long) maxDelayMilliseconds * retryNumber;
+    }
+
+    @Override
+    public void onLockReleased(long holdMilliseconds) {
+        // lost updates from concurrent threads are acceptable for the estimate
+        averageHoldMilliseconds += SMOOTHING_FACTOR * (holdMilliseconds - averageHoldMilliseconds);
+    }
+
+    /**
+     * @return Current estimate of lock hold time in ms
+     */
+    double getAverageHoldMilliseconds() {
+        return averageHoldMilliseconds;
+    }
+}
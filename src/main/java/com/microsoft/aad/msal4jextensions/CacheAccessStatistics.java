@@ -0,0 +1,234 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.aad.msal4jextensions;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Collects I/O statistics of {@link PersistenceTokenCacheAccessAspect}.
+ * Uses striped counters, so recording does not add contention to cache access.
+ */
+class CacheAccessStatistics implements ICacheAccessStatisticsMXBean {
+
+    // client id of access context without client id
+    private static final String UNKNOWN_CLIENT_ID = "unknown";
+
+    private final String cacheFilePath;
+    private final CrossProcessCacheFileLock lock;
+
+    private final LongAdder readCount = new LongAdder();
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder readTimeMicroseconds = new LongAdder();
+    private final LongAdder deserializeTimeMicroseconds = new LongAdder();
+    private final LongAdder writeCount = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+    private final LongAdder writeTimeMicroseconds = new LongAdder();
+    private final LongAdder serializeTimeMicroseconds = new LongAdder();
+    private final LongAdder skippedReloadCount = new LongAdder();
+    private final LongAdder skippedWriteCount = new LongAdder();
+    private final LongAdder skippedDeserializeCount = new LongAdder();
+    private final LongAdder prefetchCount = new LongAdder();
+    private final LongAdder prefetchedReloadCount = new LongAdder();
+    private final LongAdder coalescedWriteCount = new LongAdder();
+
+    private final ConcurrentMap<String, ClientStatistics> clientStatistics = new ConcurrentHashMap<>();
+
+    private static class ClientStatistics {
+        final LongAdder readCount = new LongAdder();
+        final LongAdder writeCount = new LongAdder();
+        final LongAdder skippedReloadCount = new LongAdder();
+        final LongAdder skippedWriteCount = new LongAdder();
+        final LongAdder skippedDeserializeCount = new LongAdder();
+    }
+
+    CacheAccessStatistics(String cacheFilePath, CrossProcessCacheFileLock lock) {
+        this.cacheFilePath = cacheFilePath;
+        this.lock = lock;
+    }
+
+    private ClientStatistics getClientStatistics(String clientId) {
+        return clientStatistics.computeIfAbsent(
+                clientId == null ? UNKNOWN_CLIENT_ID : clientId, id -> new ClientStatistics());
+    }
+
+    void recordRead(String clientId, int bytes, long readNanoseconds, long deserializeNanoseconds) {
+        readCount.increment();
+        bytesRead.add(bytes);
+        readTimeMicroseconds.add(TimeUnit.NANOSECONDS.toMicros(readNanoseconds));
+        deserializeTimeMicroseconds.add(TimeUnit.NANOSECONDS.toMicros(deserializeNanoseconds));
+
+        getClientStatistics(clientId).readCount.increment();
+    }
+
+    void recordWrite(String clientId, int bytes, long serializeNanoseconds, long writeNanoseconds) {
+        writeCount.increment();
+        bytesWritten.add(bytes);
+        serializeTimeMicroseconds.add(TimeUnit.NANOSECONDS.toMicros(serializeNanoseconds));
+        writeTimeMicroseconds.add(TimeUnit.NANOSECONDS.toMicros(writeNanoseconds));
+
+        getClientStatistics(clientId).writeCount.increment();
+    }
+
+    void recordSkippedReload(String clientId) {
+        skippedReloadCount.increment();
+
+        getClientStatistics(clientId).skippedReloadCount.increment();
+    }
+
+    void recordSkippedWrite(String clientId, long serializeNanoseconds) {
+        skippedWriteCount.increment();
+        serializeTimeMicroseconds.add(TimeUnit.NANOSECONDS.toMicros(serializeNanoseconds));
+
+        getClientStatistics(clientId).skippedWriteCount.increment();
+    }
+
+    void recordSkippedDeserialize(String clientId) {
+        skippedDeserializeCount.increment();
+
+        getClientStatistics(clientId).skippedDeserializeCount.increment();
+    }
+
+    void recordPrefetch(int bytes, long readNanoseconds) {
+        prefetchCount.increment();
+        bytesRead.add(bytes);
+        readTimeMicroseconds.add(TimeUnit.NANOSECONDS.toMicros(readNanoseconds));
+    }
+
+    void recordPrefetchedReload(long deserializeNanoseconds) {
+        prefetchedReloadCount.increment();
+        deserializeTimeMicroseconds.add(TimeUnit.NANOSECONDS.toMicros(deserializeNanoseconds));
+    }
+
+    void recordCoalescedWrite() {
+        coalescedWriteCount.increment();
+    }
+
+    @Override
+    public String getCacheFilePath() {
+        return cacheFilePath;
+    }
+
+    @Override
+    public long getReadCount() {
+        return readCount.sum();
+    }
+
+    @Override
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    @Override
+    public long getReadTimeMicroseconds() {
+        return readTimeMicroseconds.sum();
+    }
+
+    @Override
+    public long getDeserializeTimeMicroseconds() {
+        return deserializeTimeMicroseconds.sum();
+    }
+
+    @Override
+    public long getWriteCount() {
+        return writeCount.sum();
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    @Override
+    public long getWriteTimeMicroseconds() {
+        return writeTimeMicroseconds.sum();
+    }
+
+    @Override
+    public long getSerializeTimeMicroseconds() {
+        return serializeTimeMicroseconds.sum();
+    }
+
+    @Override
+    public long getSkippedReloadCount() {
+        return skippedReloadCount.sum();
+    }
+
+    @Override
+    public long getSkippedWriteCount() {
+        return skippedWriteCount.sum();
+    }
+
+    @Override
+    public long getSkippedDeserializeCount() {
+        return skippedDeserializeCount.sum();
+    }
+
+    @Override
+    public long getPrefetchCount() {
+        return prefetchCount.sum();
+    }
+
+    @Override
+    public long getPrefetchedReloadCount() {
+        return prefetchedReloadCount.sum();
+    }
+
+    @Override
+    public long getCoalescedWriteCount() {
+        return coalescedWriteCount.sum();
+    }
+
+    @Override
+    public long getLockAcquisitionCount() {
+        return lock.getStatistics().getAcquisitions();
+    }
+
+    @Override
+    public long getLockWaitTimeMicroseconds() {
+        return lock.getStatistics().getTotalWaitMicroseconds();
+    }
+
+    @Override
+    public long getLockFailureCount() {
+        return lock.getStatistics().getFailures();
+    }
+
+    @Override
+    public Map<String, Long> getReadCountByClientId() {
+        return sumByClientId(statistics -> statistics.readCount);
+    }
+
+    @Override
+    public Map<String, Long> getWriteCountByClientId() {
+        return sumByClientId(statistics -> statistics.writeCount);
+    }
+
+    @Override
+    public Map<String, Long> getSkippedReloadCountByClientId() {
+        return sumByClientId(statistics -> statistics.skippedReloadCount);
+    }
+
+    @Override
+    public Map<String, Long> getSkippedWriteCountByClientId() {
+        return sumByClientId(statistics -> statistics.skippedWriteCount);
+    }
+
+    @Override
+    public Map<String, Long> getSkippedDeserializeCountByClientId() {
+        return sumByClientId(statistics -> statistics.skippedDeserializeCount);
+    }
+
+    private Map<String, Long> sumByClientId(Function<ClientStatistics, LongAdder> counter) {
+        Map<String, Long> result = new TreeMap<>();
+        clientStatistics.forEach((clientId, statistics) -> result.put(clientId, counter.apply(statistics).sum()));
+
+        return result;
+    }
+}
@@ -0,0 +1,64 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.aad.msal4jextensions;
+
+import java.nio.file.attribute.FileTime;
+
+/**
+ * Change of the persisted cache, passed to {@link ICacheChangeListener}
+ */
+public final class CacheChangeEvent {
+
+    private final String cacheFilePath;
+    private final long generation;
+    private final long size;
+    private final FileTime lastModifiedTime;
+
+    CacheChangeEvent(String cacheFilePath, long generation, long size, FileTime lastModifiedTime) {
+        this.cacheFilePath = cacheFilePath;
+        this.generation = generation;
+        this.size = size;
+        this.lastModifiedTime = lastModifiedTime;
+    }
+
+    /**
+     * @return Path of the cache file
+     */
+    public String getCacheFilePath() {
+        return cacheFilePath;
+    }
+
+    /**
+     * @return Generation of the cache when the change was observed, which may still lag behind the change
+     * as the generation is incremented after the write, -1 if generation file is not enabled
+     * by {@link PersistenceSettings.Builder#setGenerationFileEnabled(boolean)}
+     */
+    public long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * @return Size of the cache file after the change
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return Last modified time of the cache file after the change
+     */
+    public FileTime getLastModifiedTime() {
+        return lastModifiedTime;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheChangeEvent{" +
+                "cacheFilePath='" + cacheFilePath + '\'' +
+                ", generation=" + generation +
+                ", size=" + size +
+                ", lastModifiedTime=" + lastModifiedTime +
+                '}';
+    }
+}
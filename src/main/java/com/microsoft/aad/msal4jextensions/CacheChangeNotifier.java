@@ -0,0 +1,77 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.aad.msal4jextensions;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Dispatches cache change events to registered listeners, each on its own executor.
+ * By default listeners are called on a single daemon thread shared by all aspects,
+ * so events are delivered in order.
+ */
+class CacheChangeNotifier {
+    private final static Logger LOG = LoggerFactory.getLogger(CacheChangeNotifier.class);
+
+    static final ExecutorService DEFAULT_EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "msal4j-cache-change-notifier");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static class ListenerRegistration {
+        private final ICacheChangeListener listener;
+        private final Executor executor;
+
+        private ListenerRegistration(ICacheChangeListener listener, Executor executor) {
+            this.listener = listener;
+            this.executor = executor;
+        }
+    }
+
+    private final List<ListenerRegistration> registrations = new CopyOnWriteArrayList<>();
+
+    void addListener(ICacheChangeListener listener, Executor executor) {
+        registrations.add(new ListenerRegistration(listener, executor));
+    }
+
+    /**
+     * @return true if the listener was registered
+     */
+    boolean removeListener(ICacheChangeListener listener) {
+        for (ListenerRegistration registration : registrations) {
+            if (registration.listener == listener) {
+                return registrations.remove(registration);
+            }
+        }
+        return false;
+    }
+
+    boolean hasListeners() {
+        return !registrations.isEmpty();
+    }
+
+    void notifyListeners(CacheChangeEvent event) {
+        for (ListenerRegistration registration : registrations) {
+            try {
+                registration.executor.execute(() -> {
+                    try {
+                        registration.listener.onCacheChanged(event);
+                    } catch (RuntimeException ex) {
+                        LOG.error("Cache change listener failed, " + ex.getMessage());
+                    }
+                });
+            } catch (RejectedExecutionException ex) {
+                LOG.error("Failed to notify cache change listener, " + ex.getMessage());
+            }
+        }
+    }
+}
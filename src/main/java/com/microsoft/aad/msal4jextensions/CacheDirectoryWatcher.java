@@ -0,0 +1,196 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.aad.msal4jextensions;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+/**
+ * Watches a cache directory with {@link WatchService} on a daemon thread and notifies registered
+ * cache files about changes. A single watcher is shared by all registrations of the same directory
+ * within the process, and it is shut down when the last registration is closed.
+ */
+class CacheDirectoryWatcher implements Runnable {
+    private final static Logger LOG = LoggerFactory.getLogger(CacheDirectoryWatcher.class);
+
+    private static final Map<Path, CacheDirectoryWatcher> watchers = new HashMap<>();
+
+    /**
+     * Registration of a cache file, which is marked as changed by the watcher
+     */
+    class Registration implements AutoCloseable {
+        private final Path fileName;
+        private final Runnable changeCallback;
+
+        // initially changed, so the first access loads the cache
+        private volatile boolean changed = true;
+
+        private Registration(Path fileName, Runnable changeCallback) {
+            this.fileName = fileName;
+            this.changeCallback = changeCallback;
+        }
+
+        private void markChanged() {
+            changed = true;
+
+            if (changeCallback != null) {
+                try {
+                    changeCallback.run();
+                } catch (RuntimeException ex) {
+                    LOG.error("Cache change callback failed, " + ex.getMessage());
+                }
+            }
+        }
+
+        /**
+         * Clears changed flag, must be called before the file is read, so a change made during the read is not missed
+         */
+        void resetChanged() {
+            changed = false;
+        }
+
+        /**
+         * Registration is considered changed after the watcher has stopped,
+         * so callers fall back to reading the cache.
+         *
+         * @return true if the file may have changed since the flag was last reset
+         */
+        boolean isChanged() {
+            return changed || !active;
+        }
+
+        @Override
+        public void close() {
+            unregister(this);
+        }
+    }
+
+    private final Path directory;
+    private final WatchService watchService;
+    private final Set<Registration> registrations = new CopyOnWriteArraySet<>();
+    private volatile boolean active = true;
+
+    private CacheDirectoryWatcher(Path directory) throws IOException {
+        this.directory = directory;
+
+        watchService = directory.getFileSystem().newWatchService();
+        try {
+            directory.register(watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY,
+                    StandardWatchEventKinds.ENTRY_DELETE);
+        } catch (IOException ex) {
+            watchService.close();
+            throw ex;
+        }
+
+        Thread thread = new Thread(this, "msal4j-cache-watcher-" + directory.getFileName());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Registers the cache file for change notifications
+     *
+     * @param cacheFilePath Path of the cache file
+     * @return Registration, which must be closed when notifications are no longer needed
+     * @throws IOException if the directory of the cache file can not be watched
+     */
+    static Registration register(Path cacheFilePath) throws IOException {
+        return register(cacheFilePath, null);
+    }
+
+    /**
+     * Registers the cache file for change notifications
+     *
+     * @param cacheFilePath  Path of the cache file
+     * @param changeCallback Callback called on the watcher thread when the file may have changed, or null
+     * @return Registration, which must be closed when notifications are no longer needed
+     * @throws IOException if the directory of the cache file can not be watched
+     */
+    static Registration register(Path cacheFilePath, Runnable changeCallback) throws IOException {
+        Path directory = cacheFilePath.toAbsolutePath().getParent();
+
+        synchronized (watchers) {
+            CacheDirectoryWatcher watcher = watchers.get(directory);
+            if (watcher == null || !watcher.active) {
+                watcher = new CacheDirectoryWatcher(directory);
+                watchers.put(directory, watcher);
+            }
+            Registration registration = watcher.new Registration(cacheFilePath.getFileName(), changeCallback);
+            watcher.registrations.add(registration);
+
+            return registration;
+        }
+    }
+
+    private void unregister(Registration registration) {
+        synchronized (watchers) {
+            if (registrations.remove(registration) && registrations.isEmpty()) {
+                if (watchers.get(directory) == this) {
+                    watchers.remove(directory);
+                }
+                stop();
+            }
+        }
+    }
+
+    static int getWatcherCount() {
+        synchronized (watchers) {
+            return watchers.size();
+        }
+    }
+
+    private void stop() {
+        active = false;
+        try {
+            watchService.close();
+        } catch (IOException ex) {
+            LOG.error("Failed to close watch service of " + directory + ", " + ex.getMessage());
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (active) {
+                WatchKey key = watchService.take();
+
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        // events were lost, any cache file may have changed
+                        for (Registration registration : registrations) {
+                            registration.markChanged();
+                        }
+                    } else {
+                        for (Registration registration : registrations) {
+                            if (registration.fileName.equals(event.context())) {
+                                registration.markChanged();
+                            }
+                        }
+                    }
+                }
+                if (!key.reset()) {
+                    LOG.warn("Cache directory " + directory + " is no longer watched");
+                    stop();
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException ex) {
+            // stopped
+        }
+        active = false;
+    }
+}
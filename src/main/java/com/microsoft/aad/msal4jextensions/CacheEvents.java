@@ -0,0 +1,67 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.aad.msal4jextensions;
+
+/**
+ * Emits Java Flight Recorder events of cache lock and cache access phases.
+ * Events are emitted only if JFR is available in the running JVM and recording of the event is enabled,
+ * otherwise no-op events are returned, so the cost of instrumentation is a few method calls.
+ * JFR specific classes are loaded only if JFR is available, so the library still runs on Java 8 JVMs without it.
+ */
+final class CacheEvents {
+
+    private static final boolean JFR_AVAILABLE = isJfrAvailable();
+
+    /**
+     * Event of cross process lock acquisition
+     */
+    interface ILockEvent {
+        void complete(String lockFilePath, boolean write, int retryCount, boolean acquired);
+    }
+
+    /**
+     * Event of cache access phase: storage read or write, cache deserialization or serialization
+     */
+    interface IAccessEvent {
+        void complete(String cacheFilePath, int size);
+    }
+
+    private static final ILockEvent NOOP_LOCK_EVENT = (lockFilePath, write, retryCount, acquired) -> {
+    };
+
+    private static final IAccessEvent NOOP_ACCESS_EVENT = (cacheFilePath, size) -> {
+    };
+
+    private CacheEvents() {
+    }
+
+    private static boolean isJfrAvailable() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return true;
+        } catch (ClassNotFoundException | LinkageError ex) {
+            return false;
+        }
+    }
+
+    static ILockEvent beginLockAcquire() {
+        return JFR_AVAILABLE ? JfrCacheEvents.beginLockAcquire(NOOP_LOCK_EVENT) : NOOP_LOCK_EVENT;
+    }
+
+    static IAccessEvent beginRead() {
+        return JFR_AVAILABLE ? JfrCacheEvents.beginRead(NOOP_ACCESS_EVENT) : NOOP_ACCESS_EVENT;
+    }
+
+    static IAccessEvent beginWrite() {
+        return JFR_AVAILABLE ? JfrCacheEvents.beginWrite(NOOP_ACCESS_EVENT) : NOOP_ACCESS_EVENT;
+    }
+
+    static IAccessEvent beginDeserialize() {
+        return JFR_AVAILABLE ? JfrCacheEvents.beginDeserialize(NOOP_ACCESS_EVENT) : NOOP_ACCESS_EVENT;
+    }
+
+    static IAccessEvent beginSerialize() {
+        return JFR_AVAILABLE ? JfrCacheEvents.beginSerialize(NOOP_ACCESS_EVENT) : NOOP_ACCESS_EVENT;
+    }
+}
@@ -0,0 +1,76 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.aad.msal4jextensions;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Objects;
+
+/**
+ * Change stamp of the cache file: file key, size and last modified time in full precision of the file system.
+ * File key (inode) changes when the file is replaced by atomic rename, size and time catch in place writes,
+ * so writes which happen within one tick of millisecond based modified time are not missed.
+ * All attributes are read in one call.
+ */
+final class CacheFileStamp {
+
+    private final Object fileKey;
+    private final long size;
+    private final FileTime lastModifiedTime;
+
+    private CacheFileStamp(Object fileKey, long size, FileTime lastModifiedTime) {
+        this.fileKey = fileKey;
+        this.size = size;
+        this.lastModifiedTime = lastModifiedTime;
+    }
+
+    /**
+     * @return Stamp of the file, null if the file does not exist or its attributes can not be read
+     */
+    static CacheFileStamp read(Path filePath) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(filePath, BasicFileAttributes.class);
+
+            return new CacheFileStamp(attributes.fileKey(), attributes.size(), attributes.lastModifiedTime());
+        } catch (IOException ex) {
+            return null;
+        }
+    }
+
+    long getSize() {
+        return size;
+    }
+
+    FileTime getLastModifiedTime() {
+        return lastModifiedTime;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof CacheFileStamp)) {
+            return false;
+        }
+        CacheFileStamp other = (CacheFileStamp) o;
+
+        return size == other.size &&
+                Objects.equals(fileKey, other.fileKey) &&
+                lastModifiedTime.equals(other.lastModifiedTime);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(fileKey, size, lastModifiedTime);
+    }
+
+    @Override
+    public String toString() {
+        return "CacheFileStamp{fileKey=" + fileKey + ", size=" + size + ", lastModifiedTime=" + lastModifiedTime + '}';
+    }
+}
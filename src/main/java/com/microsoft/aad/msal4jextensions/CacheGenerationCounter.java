@@ -0,0 +1,81 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.aad.msal4jextensions;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 64-bit generation counter of the cache, stored in a sidecar file which is memory-mapped by every process
+ * sharing the cache. Writers increment the counter under the exclusive cross process lock after the cache
+ * is written, readers detect changes by reading the counter from mapped memory, without any lock or system call.
+ * Reader which sees a changed generation takes the lock to read the cache.
+ */
+class CacheGenerationCounter {
+
+    private static final int COUNTER_SIZE = Long.BYTES;
+
+    // null once closed, read without a lock
+    private volatile MappedByteBuffer buffer;
+
+    CacheGenerationCounter(Path generationFilePath) throws IOException {
+        try (FileChannel channel = FileChannel.open(generationFilePath,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+
+            // mapping extends new file to the counter size, mapping stays valid after the channel is closed
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, COUNTER_SIZE);
+        }
+    }
+
+    /**
+     * Reads the generation without a lock. Aligned 8-byte read is not torn on 64-bit platforms,
+     * elsewhere it is repeated until two reads agree, so a value half written by other process is not returned
+     *
+     * @return Current generation, or -1 if the counter is closed
+     */
+    long get() {
+        MappedByteBuffer buffer = this.buffer;
+        if (buffer == null) {
+            return -1;
+        }
+        long generation = buffer.getLong(0);
+        long previousGeneration;
+        do {
+            previousGeneration = generation;
+            generation = buffer.getLong(0);
+        } while (generation != previousGeneration);
+
+        return generation;
+    }
+
+    /**
+     * Increments the generation, must be called while holding exclusive cross process lock
+     *
+     * @return New generation, or -1 if the counter is closed
+     */
+    long increment() {
+        MappedByteBuffer buffer = this.buffer;
+        if (buffer == null) {
+            return -1;
+        }
+        long generation = buffer.getLong(0) + 1;
+        buffer.putLong(0, generation);
+
+        return generation;
+    }
+
+    /**
+     * Releases the mapping. Reads in progress keep using the buffer they already got,
+     * Java 8 has no public API to unmap the file, so the mapping is unmapped when the buffer is garbage collected.
+     * Channel is closed once the file is mapped
+     */
+    void close() {
+        buffer = null;
+    }
+}
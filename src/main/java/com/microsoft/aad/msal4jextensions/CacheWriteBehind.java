@@ -0,0 +1,129 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.aad.msal4jextensions;
+
+import com.microsoft.aad.msal4j.ITokenCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+
+/**
+ * Coalesces cache writes of an aspect within a window into a single write, made on a writer thread
+ * shared by all aspects. Pending writes are flushed on JVM shutdown.
+ */
+class CacheWriteBehind {
+    private final static Logger LOG = LoggerFactory.getLogger(CacheWriteBehind.class);
+
+    private static final ScheduledExecutorService WRITER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "msal4j-cache-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // weakly referenced, so unused aspects can be collected
+    private static final Set<CacheWriteBehind> instances =
+            Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(CacheWriteBehind::flushAll, "msal4j-cache-writer-shutdown"));
+    }
+
+    private static class PendingWrite {
+        private final ITokenCache tokenCache;
+        private final String clientId;
+
+        private PendingWrite(ITokenCache tokenCache, String clientId) {
+            this.tokenCache = tokenCache;
+            this.clientId = clientId;
+        }
+    }
+
+    private final long windowMillis;
+    private final BiConsumer<ITokenCache, String> cacheWriter;
+
+    private final AtomicReference<PendingWrite> pendingWrite = new AtomicReference<>();
+    private final Object flushLock = new Object();
+
+    /**
+     * @param windowMillis Time for which writes are coalesced, starting with the first write
+     * @param cacheWriter  Writes serialized token cache to the storage, called with client id of the last write
+     */
+    CacheWriteBehind(long windowMillis, BiConsumer<ITokenCache, String> cacheWriter) {
+        this.windowMillis = windowMillis;
+        this.cacheWriter = cacheWriter;
+
+        instances.add(this);
+    }
+
+    /**
+     * Schedules write of the token cache, coalesced with other writes scheduled within the window
+     *
+     * @return true if the write was coalesced with already pending write
+     */
+    boolean schedule(ITokenCache tokenCache, String clientId) {
+        if (pendingWrite.getAndSet(new PendingWrite(tokenCache, clientId)) != null) {
+            return true;
+        }
+        WRITER.schedule(this::flushOnWriter, windowMillis, TimeUnit.MILLISECONDS);
+
+        return false;
+    }
+
+    /**
+     * Runs the action, typically reload of the cache, unless there is a pending write,
+     * which would be lost by the reload. Flush does not run concurrently with the action.
+     *
+     * @return true if the action was run
+     */
+    boolean runIfNotPending(Runnable action) {
+        synchronized (flushLock) {
+            if (pendingWrite.get() != null) {
+                return false;
+            }
+            action.run();
+
+            return true;
+        }
+    }
+
+    /**
+     * Writes pending changes of the token cache to the storage, on the calling thread
+     */
+    void flush() {
+        synchronized (flushLock) {
+            PendingWrite write = pendingWrite.getAndSet(null);
+            if (write != null) {
+                cacheWriter.accept(write.tokenCache, write.clientId);
+            }
+        }
+    }
+
+    private void flushOnWriter() {
+        try {
+            flush();
+        } catch (RuntimeException ex) {
+            LOG.error("Failed to write cache, " + ex.getMessage());
+        }
+    }
+
+    private static void flushAll() {
+        List<CacheWriteBehind> writeBehinds;
+        synchronized (instances) {
+            writeBehinds = new ArrayList<>(instances);
+        }
+        for (CacheWriteBehind writeBehind : writeBehinds) {
+            writeBehind.flushOnWriter();
+        }
+    }
+}
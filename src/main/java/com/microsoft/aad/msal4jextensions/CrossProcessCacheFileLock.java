@@ -3,35 +3,159 @@
 
 package com.microsoft.aad.msal4jextensions;
 
+import com.sun.jna.Platform;
+import com.sun.jna.platform.win32.Kernel32;
+import com.sun.jna.platform.win32.WinBase;
+import com.sun.jna.platform.win32.WinError;
+import com.sun.jna.platform.win32.WinNT;
+import com.sun.jna.ptr.IntByReference;
+
 import java.io.File;
 import java.io.IOException;
 import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
 import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousCloseException;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileLock;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * Cross process lock based on lock file creation/deletion (optional) + OS level file lock.
+ *
+ * If shared read lock is enabled, the lock file is never deleted and the lock is taken on two
+ * byte ranges of it: a gate region and a data region. Readers take both regions in shared mode
+ * and release the gate as soon as the data region is held, writers hold both regions exclusively.
+ * A writer waiting for readers to drain keeps the gate, so new readers can not starve it.
+ *
+ * If blocking wait is enabled, the lock file is never deleted either, and waiting threads park on
+ * blocking OS lock call instead of polling, so they are woken up as soon as the lock is released.
+ *
+ * Whenever the lock file is persistent, its channel is opened once and reused across lock cycles,
+ * so acquiring and releasing the lock only takes and releases byte range locks. Once the lock is acquired,
+ * it is checked that the lock file path still refers to the opened file, if the file was deleted or replaced,
+ * e.g. by a process using non persistent lock file, the lock is released and the lock file is opened again.
+ *
+ * Threads of the same process are coordinated by a fair in-process read/write lock per lock file,
+ * which is acquired before the OS lock. Local threads hand the lock off to each other without polling,
+ * only one of them at a time acquires the OS lock, and it holds it on behalf of all local readers.
+ * As they share the OS lock, all locks of the process which use the same lock file must use the same
+ * lock protocol, i.e. the same shared read lock, blocking wait and persistent lock file settings.
+ * The shared state is released by {@link #close()} of the last lock which uses it.
+ *
+ * The lock is owned by threads and is reentrant: nested lock calls of a thread which already holds
+ * the lock only increment its hold count, without any I/O. A read lock can be acquired while holding
+ * the write lock, but not vice versa. Each unlock call releases the latest hold of the calling thread.
+ *
+ * Lock file which was not deleted because its holder process was killed is detected by
+ * the holder process id written to it, and is reclaimed without waiting for the retry budget.
+ *
+ * Contention statistics are collected per lock file, see {@link #getStatistics()},
+ * lock acquisitions are also reported as Java Flight Recorder events, see {@link CacheEvents}.
  */
 class CrossProcessCacheFileLock {
     private final static Logger LOG = LoggerFactory.getLogger(CrossProcessCacheFileLock.class);
 
-    private int retryDelayMilliseconds;
-    private int retryNumber;
+    // Lock regions are placed past any content of the lock file, but inside the range
+    // locked by tryLock() without arguments, so they also conflict with whole file locks
+    static final long GATE_REGION_POSITION = Long.MAX_VALUE - 2;
+    static final long DATA_REGION_POSITION = Long.MAX_VALUE - 1;
+
+    private static final String PROCESS_ID = getProcessId();
+    private static final String HOST_NAME = getHostName();
+
+    // for debugging purpose jvm name is written to lock file
+    private static final byte[] JVM_NAME_BYTES = ManagementFactory.getRuntimeMXBean().getName()
+            .replace("@", " ").getBytes(StandardCharsets.UTF_8);
+
+    private static final ScheduledExecutorService TIMEOUT_SCHEDULER =
+            Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "msal4j-extensions-lock-timeout");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    private ILockRetryPolicy retryPolicy;
+
+    private boolean sharedReadLock;
+    private boolean blockingWait;
+    private boolean persistentLockFile;
+
+    private static final ConcurrentMap<String, LockFileState> LOCK_FILE_STATES = new ConcurrentHashMap<>();
 
     private File lockFile;
+    private String lockFileStateKey;
+
+    private LockFileState state;
+    private boolean closed;
+
+    /**
+     * State of the lock file shared by all locks of this process which use it.
+     * OS lock fields are accessed by the thread holding local write lock,
+     * or by local readers while holding readersLock.
+     */
+    private static class LockFileState {
+        final ReentrantReadWriteLock localLock = new ReentrantReadWriteLock(true);
+
+        // guards OS lock acquisition and release on behalf of local readers
+        final ReentrantLock readersLock = new ReentrantLock();
+
+        // lock protocol of the locks which use the lock file
+        final boolean sharedReadLock;
+        final boolean blockingWait;
+        final boolean persistentLockFile;
 
-    private FileLock lock;
+        LockFileState(boolean sharedReadLock, boolean blockingWait, boolean persistentLockFile) {
+            this.sharedReadLock = sharedReadLock;
+            this.blockingWait = blockingWait;
+            this.persistentLockFile = persistentLockFile;
+        }
+
+        // number of not closed locks which use the state, guarded by LOCK_FILE_STATES
+        int users;
+
+        FileChannel fileChannel;
+        // key of the file opened by fileChannel, null if not supported by the file system
+        Object fileKey;
+        FileLock lock;
+        FileLock gateLock;
+
+        boolean locked;
+        long lockAcquiredNanoTime;
 
-    private FileChannel fileChannel;
+        // number of local readers sharing OS lock
+        int readers;
 
-    private boolean locked;
+        // retries of ongoing OS lock acquisition, which is done by one local thread at a time
+        int retryCount;
+
+        // lock modes held by the thread, latest on top, true for write lock
+        final ThreadLocal<Deque<Boolean>> holds = ThreadLocal.withInitial(ArrayDeque::new);
+
+        final LockStatisticsRecorder statistics = new LockStatisticsRecorder();
+    }
 
     /**
      * Constructor
@@ -41,24 +165,101 @@ class CrossProcessCacheFileLock {
      * @param retryNumber            Number of attempts to acquire lock
      */
     CrossProcessCacheFileLock(String lockfileName, int retryDelayMilliseconds, int retryNumber) {
+        this(lockfileName, new FixedLockRetryPolicy(retryDelayMilliseconds, retryNumber), false, false, false);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param lockfileName   Path of the lock file
+     * @param retryPolicy    Policy of lock acquisition attempts
+     * @param sharedReadLock If true, {@link #readLock()} acquires shared OS lock,
+     *                       lock file is persistent
+     * @param blockingWait       If true, waits on blocking OS lock call
+     *                           up to timeout of retry policy, lock file is persistent
+     * @param persistentLockFile If true, lock file and its channel are kept open across lock cycles
+     * @throws IllegalArgumentException if the lock file is already used by this process with other lock protocol
+     */
+    CrossProcessCacheFileLock(String lockfileName, ILockRetryPolicy retryPolicy,
+                              boolean sharedReadLock, boolean blockingWait, boolean persistentLockFile) {
         lockFile = new File(lockfileName);
+        lockFileStateKey = lockFile.getAbsoluteFile().toPath().normalize().toString();
+        state = LOCK_FILE_STATES.compute(lockFileStateKey, (path, existingState) -> {
+            LockFileState lockFileState = existingState != null ?
+                    existingState : new LockFileState(sharedReadLock, blockingWait, persistentLockFile);
 
-        this.retryDelayMilliseconds = retryDelayMilliseconds;
-        this.retryNumber = retryNumber;
+            // retry policy is not a part of the protocol, each lock waits according to its own policy
+            if (lockFileState.sharedReadLock != sharedReadLock ||
+                    lockFileState.blockingWait != blockingWait ||
+                    lockFileState.persistentLockFile != persistentLockFile) {
+                throw new IllegalArgumentException("Lock file " + lockfileName + " is already used by this process " +
+                        "with sharedReadLock=" + lockFileState.sharedReadLock +
+                        ", blockingWait=" + lockFileState.blockingWait +
+                        ", persistentLockFile=" + lockFileState.persistentLockFile);
+            }
+            lockFileState.users++;
+
+            return lockFileState;
+        });
+
+        this.retryPolicy = retryPolicy;
+        this.sharedReadLock = sharedReadLock;
+        this.blockingWait = blockingWait;
+        this.persistentLockFile = persistentLockFile;
     }
 
-    private String getProcessId() {
+    /**
+     * Releases the use of the lock file state shared by the locks of this process which use the lock file.
+     * Once the last of them is closed, the state is removed and the persistent lock file is closed.
+     * Must not be called while the lock is held, the lock can not be used after it is closed.
+     */
+    void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        LOCK_FILE_STATES.computeIfPresent(lockFileStateKey, (path, lockFileState) -> {
+            if (lockFileState != state || --lockFileState.users > 0) {
+                return lockFileState;
+            }
+            if (!lockFileState.locked && lockFileState.fileChannel != null) {
+                closeChannel(lockFileState.fileChannel);
+                lockFileState.fileChannel = null;
+            }
+            return null;
+        });
+    }
+
+    /**
+     * @return Snapshot of contention statistics of the lock file, shared by all locks of this process which use it
+     */
+    LockStatistics getStatistics() {
+        return state.statistics.snapshot();
+    }
+
+    private boolean isLockFilePersistent() {
+        return persistentLockFile || sharedReadLock || blockingWait;
+    }
+
+    private static String getProcessId() {
         String vmName = ManagementFactory.getRuntimeMXBean().getName();
 
         return vmName.substring(0, vmName.indexOf("@"));
     }
 
+    private static String getHostName() {
+        String vmName = ManagementFactory.getRuntimeMXBean().getName();
+
+        return vmName.substring(vmName.indexOf("@") + 1);
+    }
+
     private String getLockProcessThreadId() {
-        return "pid:" + getProcessId() + " thread:" + Thread.currentThread().getId();
+        return "pid:" + PROCESS_ID + " thread:" + Thread.currentThread().getId();
     }
 
     private boolean tryToCreateLockFile() {
-        for (int tryCount = 0; tryCount < retryNumber; tryCount++) {
+        for (int tryCount = 0; tryCount < retryPolicy.getRetryNumber(); tryCount++) {
             boolean fileCreated = false;
             try {
                 fileCreated = lockFile.createNewFile();
@@ -67,90 +268,522 @@ class CrossProcessCacheFileLock {
             }
             if (fileCreated) {
                 return true;
-            } else {
-                waitBeforeRetry();
+            } else if (!reclaimStaleLockFile()) {
+                waitBeforeRetry(tryCount + 1);
             }
         }
         return false;
     }
 
-    private void waitBeforeRetry(){
+    /**
+     * Deletes lock file left by a process which was terminated while holding the lock.
+     * Lock file is stale if it contains id of a process on this host which is not alive.
+     * Lock file without holder record is not considered stale, as it may be just created by its holder.
+     * <p>
+     * The file is first atomically moved to a unique name, so it can not be opened by its path any more,
+     * and it is deleted only if it is not locked and still holds the record of the terminated process.
+     * Otherwise it belongs to a new holder, which replaced the stale file meanwhile, and it is moved back.
+     *
+     * @return true if stale lock file was deleted
+     */
+    private boolean reclaimStaleLockFile() {
         try {
-            Thread.sleep(retryDelayMilliseconds);
+            String holder = new String(Files.readAllBytes(lockFile.toPath()), StandardCharsets.UTF_8).trim();
+
+            String[] tokens = holder.split(" ");
+            if (tokens.length != 2 || !HOST_NAME.equals(tokens[1]) || PROCESS_ID.equals(tokens[0])) {
+                return false;
+            }
+            long holderProcessId = Long.parseLong(tokens[0]);
+
+            if (isProcessAlive(holderProcessId)) {
+                return false;
+            }
+
+            Path staleLockFile = Paths.get(lockFile.getPath() + ".stale." + PROCESS_ID + "." + System.nanoTime());
+            Files.move(lockFile.toPath(), staleLockFile, StandardCopyOption.ATOMIC_MOVE);
+
+            boolean stale = false;
+            try (FileChannel channel = FileChannel.open(staleLockFile,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                FileLock staleLock = channel.tryLock();
+                if (staleLock != null) {
+                    // make sure the file was not replaced by a new holder in the meantime
+                    stale = holder.equals(readHolder(channel));
+                    staleLock.release();
+                }
+            } finally {
+                if (stale) {
+                    LOG.warn(getLockProcessThreadId() + " deleting stale lock file of terminated process " +
+                            holderProcessId);
+                    Files.deleteIfExists(staleLockFile);
+                } else {
+                    restoreLockFile(staleLockFile);
+                }
+            }
+            return stale;
+        } catch (NoSuchFileException ex) {
+            // lock file was deleted by its holder, retry right away
+            return true;
+        } catch (IOException | NumberFormatException ex) {
+            LOG.debug(getLockProcessThreadId() + " failed to check lock file holder, " + ex.getMessage());
+            return false;
+        }
+    }
+
+    private static String readHolder(FileChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        int length;
+        do {
+            length = channel.read(buffer, buffer.position());
+        } while (length > 0 && buffer.hasRemaining());
+
+        return new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8).trim();
+    }
+
+    private void restoreLockFile(Path staleLockFile) {
+        try {
+            Files.move(staleLockFile, lockFile.toPath());
+        } catch (IOException ex) {
+            // new lock file was created meanwhile, it is used by the next holders
+            LOG.warn(getLockProcessThreadId() + " failed to restore lock file of its holder, " + ex.getMessage());
+            try {
+                Files.deleteIfExists(staleLockFile);
+            } catch (IOException deleteEx) {
+                LOG.error(deleteEx.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Checks if a process on this host is alive.
+     * Uses ProcessHandle on Java 9+, otherwise platform specific API,
+     * process is considered alive if it can not be checked.
+     */
+    static boolean isProcessAlive(long processId) {
+        try {
+            Class<?> processHandleClass = Class.forName("java.lang.ProcessHandle");
+            Method of = processHandleClass.getMethod("of", long.class);
+            Method isAlive = processHandleClass.getMethod("isAlive");
+
+            Optional<?> processHandle = (Optional<?>) of.invoke(null, processId);
+
+            return processHandle.isPresent() && (Boolean) isAlive.invoke(processHandle.get());
+        } catch (ReflectiveOperationException ex) {
+            // Java 8
+        }
+
+        if (Platform.isWindows()) {
+            WinNT.HANDLE process = Kernel32.INSTANCE.OpenProcess(
+                    WinNT.PROCESS_QUERY_LIMITED_INFORMATION, false, (int) processId);
+            if (process == null) {
+                return Kernel32.INSTANCE.GetLastError() != WinError.ERROR_INVALID_PARAMETER;
+            }
+            try {
+                IntByReference exitCode = new IntByReference();
+                return !Kernel32.INSTANCE.GetExitCodeProcess(process, exitCode) ||
+                        exitCode.getValue() == WinBase.STILL_ACTIVE;
+            } finally {
+                Kernel32.INSTANCE.CloseHandle(process);
+            }
+        }
+        if (Platform.isLinux()) {
+            return Files.exists(Paths.get("/proc", Long.toString(processId)));
+        }
+        return true;
+    }
+
+    private void waitBeforeRetry(int retryCount){
+        state.statistics.recordRetry();
+        state.retryCount++;
+        try {
+            Thread.sleep(retryPolicy.getRetryDelayMilliseconds(retryCount));
         } catch (InterruptedException e) {
             LOG.error(e.getMessage());
         }
     }
 
     /**
-     * Tries to acquire lock by creating lockFile (optional),
-     * and acquiring OS lock for lockFile (mandatory)
-     * Retries {@link #retryNumber} times with {@link #retryDelayMilliseconds} delay
+     * Acquires exclusive lock for writing cache data.
+     * Waits for in-process lock, then tries to acquire OS lock,
+     * unless current thread already holds write lock
      *
      * @throws CacheFileLockAcquisitionException if the lock was not obtained.
      */
     void lock() throws CacheFileLockAcquisitionException {
+        long lockAcquisitionStartNanoTime = System.nanoTime();
+
+        Lock localLock = state.localLock.writeLock();
+        if (state.localLock.isWriteLockedByCurrentThread()) {
+            localLock.lock();
+            state.holds.get().push(true);
+            return;
+        }
+        if (state.localLock.getReadHoldCount() > 0) {
+            throw new CacheFileLockAcquisitionException(
+                    getLockProcessThreadId() + " can not acquire write lock while holding read lock");
+        }
+
+        CacheEvents.ILockEvent event = CacheEvents.beginLockAcquire();
+        try {
+            acquireLocalLock(localLock);
+        } catch (RuntimeException ex) {
+            event.complete(lockFile.getPath(), true, 0, false);
+            throw ex;
+        }
+        try {
+            acquireOsLock(false, lockAcquisitionStartNanoTime);
+        } catch (RuntimeException ex) {
+            event.complete(lockFile.getPath(), true, state.retryCount, false);
+            localLock.unlock();
+            throw ex;
+        }
+        state.holds.get().push(true);
+        state.statistics.recordAcquisition(System.nanoTime() - lockAcquisitionStartNanoTime);
+        event.complete(lockFile.getPath(), true, state.retryCount, true);
+    }
+
+    /**
+     * Acquires lock for reading cache data.
+     * Local readers share in-process lock, the first of them acquires OS lock on behalf of all of them.
+     * If shared read lock is enabled, OS lock is shared so readers from different processes
+     * do not serialize, otherwise it is exclusive.
+     * If current thread already holds read or write lock, only its hold count is incremented.
+     *
+     * @throws CacheFileLockAcquisitionException if the lock was not obtained.
+     */
+    void readLock() throws CacheFileLockAcquisitionException {
+        long lockAcquisitionStartNanoTime = System.nanoTime();
+
+        Lock localLock = state.localLock.readLock();
+        if (state.localLock.isWriteLockedByCurrentThread() || state.localLock.getReadHoldCount() > 0) {
+            localLock.lock();
+            state.holds.get().push(false);
+            return;
+        }
+
+        CacheEvents.ILockEvent event = CacheEvents.beginLockAcquire();
+        try {
+            acquireLocalLock(localLock);
+        } catch (RuntimeException ex) {
+            event.complete(lockFile.getPath(), false, 0, false);
+            throw ex;
+        }
+        int retryCount = 0;
+        try {
+            // other local readers wait for the first one to acquire OS lock, up to the timeout of retry policy
+            acquireReadersLock(lockAcquisitionStartNanoTime);
+            try {
+                if (state.readers == 0) {
+                    try {
+                        acquireOsLock(sharedReadLock, lockAcquisitionStartNanoTime);
+                    } finally {
+                        retryCount = state.retryCount;
+                    }
+                }
+                state.readers++;
+            } finally {
+                state.readersLock.unlock();
+            }
+        } catch (RuntimeException ex) {
+            event.complete(lockFile.getPath(), false, retryCount, false);
+            localLock.unlock();
+            throw ex;
+        }
+        state.holds.get().push(false);
+        state.statistics.recordAcquisition(System.nanoTime() - lockAcquisitionStartNanoTime);
+        event.complete(lockFile.getPath(), false, retryCount, true);
+    }
+
+    private void acquireReadersLock(long lockAcquisitionStartNanoTime) throws CacheFileLockAcquisitionException {
+        long remainingNanoseconds = TimeUnit.MILLISECONDS.toNanos(retryPolicy.getTimeoutMilliseconds()) -
+                (System.nanoTime() - lockAcquisitionStartNanoTime);
+        try {
+            if (state.readersLock.tryLock(Math.max(remainingNanoseconds, 0), TimeUnit.NANOSECONDS)) {
+                return;
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        LOG.error(getLockProcessThreadId() + " failed to acquire read lock shared by local readers");
+        state.statistics.recordFailure();
+
+        throw new CacheFileLockAcquisitionException(
+                getLockProcessThreadId() + " failed to acquire read lock shared by local readers");
+    }
+
+    private void acquireLocalLock(Lock localLock) throws CacheFileLockAcquisitionException {
+        try {
+            if (localLock.tryLock(retryPolicy.getTimeoutMilliseconds(), TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        LOG.error(getLockProcessThreadId() + " failed to acquire in-process lock");
+        state.statistics.recordFailure();
+
+        throw new CacheFileLockAcquisitionException(
+                getLockProcessThreadId() + " failed to acquire in-process lock");
+    }
+
+    /**
+     * Tries to acquire OS lock for lockFile.
+     * Unless lock file is persistent, acquires it by creating lockFile (optional),
+     * and acquiring OS lock for lockFile (mandatory)
+     * Retries according to {@link #retryPolicy}
+     */
+    private void acquireOsLock(boolean shared, long lockAcquisitionStartNanoTime)
+            throws CacheFileLockAcquisitionException {
+        state.retryCount = 0;
+
+        if (isLockFilePersistent()) {
+            lockRegions(shared, lockAcquisitionStartNanoTime);
+            return;
+        }
+
         if (!tryToCreateLockFile()) {
             LOG.debug(getLockProcessThreadId() + " Failed to create lock file!");
         }
 
-        for (int tryCount = 0; tryCount < retryNumber; tryCount++) {
+        for (int tryCount = 0; tryCount < retryPolicy.getRetryNumber(); tryCount++) {
             try {
                 lockFile.createNewFile();
 
                 LOG.debug(getLockProcessThreadId() + " acquiring file lock");
-                fileChannel = FileChannel.open(lockFile.toPath(),
+                state.fileChannel = FileChannel.open(lockFile.toPath(),
                         StandardOpenOption.READ,
                         StandardOpenOption.SYNC,
                         StandardOpenOption.WRITE);
 
                 // try to get file lock
-                lock = fileChannel.tryLock();
-                if (lock == null) {
+                state.lock = state.fileChannel.tryLock();
+                if (state.lock == null) {
                     throw new IllegalStateException("Lock is not available");
                 }
 
                 // for debugging purpose write jvm name to lock file
-                writeJvmName(fileChannel);
+                writeJvmName(state.fileChannel);
 
-                locked = true;
+                onLockAcquired(tryCount, lockAcquisitionStartNanoTime);
                 LOG.debug(getLockProcessThreadId() + " acquired OK file lock");
                 return;
             } catch (Exception ex) {
                 LOG.debug(getLockProcessThreadId() + " failed to acquire lock," +
                         " exception msg - " + ex.getMessage());
                 releaseResources();
-                waitBeforeRetry();
+                waitBeforeRetry(tryCount + 1);
             }
         }
         LOG.error(getLockProcessThreadId() + " failed to acquire lock");
+        state.statistics.recordFailure();
 
         throw new CacheFileLockAcquisitionException(
                 getLockProcessThreadId() + " failed to acquire lock");
     }
 
-    private void writeJvmName(FileChannel fileChannel) throws IOException {
-        String jvmName = ManagementFactory.getRuntimeMXBean().getName();
+    private void lockRegions(boolean shared, long lockAcquisitionStartNanoTime)
+            throws CacheFileLockAcquisitionException {
+        String mode = shared ? "shared" : "exclusive";
+        int tryCount = 0;
+        long deadline = System.currentTimeMillis() + retryPolicy.getTimeoutMilliseconds();
+
+        while (blockingWait ? System.currentTimeMillis() < deadline : tryCount < retryPolicy.getRetryNumber()) {
+            try {
+                if (state.fileChannel == null) {
+                    LOG.debug(getLockProcessThreadId() + " acquiring " + mode + " file lock");
+                    state.fileChannel = FileChannel.open(lockFile.toPath(),
+                            StandardOpenOption.CREATE,
+                            StandardOpenOption.READ,
+                            StandardOpenOption.WRITE);
+                    state.fileKey = getLockFileKey();
+                }
+                if (state.gateLock == null) {
+                    state.gateLock = acquireRegion(GATE_REGION_POSITION, shared, deadline);
+                    if (state.gateLock == null) {
+                        throw new IllegalStateException("Lock gate is not available");
+                    }
+                }
+                // writer keeps the gate while waiting for readers to drain
+                state.lock = acquireRegion(DATA_REGION_POSITION, shared, deadline);
+                if (state.lock == null) {
+                    throw new IllegalStateException("Lock is not available");
+                }
+                if (state.fileKey != null && !state.fileKey.equals(getLockFileKey())) {
+                    // lock of the deleted file does not exclude processes which lock the new one
+                    LOG.warn(getLockProcessThreadId() + " lock file was deleted or replaced, " +
+                            "it may be used by a process with non persistent lock file");
+                    releaseResources();
+                    closeChannel(state.fileChannel);
+                    state.fileChannel = null;
+                    throw new IllegalStateException("Lock file was replaced");
+                }
+
+                if (shared) {
+                    state.gateLock.release();
+                    state.gateLock = null;
+                } else {
+                    // for debugging purpose write jvm name to lock file
+                    writeJvmName(state.fileChannel);
+                }
+
+                onLockAcquired(tryCount, lockAcquisitionStartNanoTime);
+                LOG.debug(getLockProcessThreadId() + " acquired OK " + mode + " file lock");
+                return;
+            } catch (Exception ex) {
+                LOG.debug(getLockProcessThreadId() + " failed to acquire " + mode + " lock," +
+                        " exception msg - " + ex.getMessage());
+                if (shared || state.gateLock == null || state.lock != null ||
+                        state.fileChannel == null || !state.fileChannel.isOpen()) {
+                    releaseResources();
+                }
+                if (Thread.currentThread().isInterrupted() ||
+                        (blockingWait && System.currentTimeMillis() >= deadline)) {
+                    break;
+                }
+                tryCount++;
+                waitBeforeRetry(tryCount);
+            }
+        }
+        releaseResources();
+        LOG.error(getLockProcessThreadId() + " failed to acquire " + mode + " lock");
+        state.statistics.recordFailure();
+
+        throw new CacheFileLockAcquisitionException(
+                getLockProcessThreadId() + " failed to acquire " + mode + " lock");
+    }
+
+    /**
+     * Acquires OS lock for one byte region of the lock file.
+     * In blocking wait mode parks on {@link FileChannel#lock(long, long, boolean)} until the lock is released
+     * by its holder, the wait is interrupted by closing the channel when the deadline expires.
+     *
+     * @return The lock, or null if it is not available
+     */
+    private FileLock acquireRegion(long position, boolean shared, long deadline) throws IOException {
+        if (!blockingWait) {
+            return state.fileChannel.tryLock(position, 1, shared);
+        }
+
+        long remaining = deadline - System.currentTimeMillis();
+        if (remaining <= 0) {
+            return null;
+        }
+
+        final FileChannel channel = state.fileChannel;
+        ScheduledFuture<?> timeout = TIMEOUT_SCHEDULER.schedule(
+                () -> closeChannel(channel), remaining, TimeUnit.MILLISECONDS);
+        try {
+            FileLock regionLock = channel.lock(position, 1, shared);
+            if (!timeout.cancel(false)) {
+                // deadline expired right after the lock was acquired, channel is closed
+                return null;
+            }
+            return regionLock;
+        } catch (AsynchronousCloseException ex) {
+            return null;
+        } finally {
+            timeout.cancel(false);
+        }
+    }
+
+    /**
+     * @return Key of the file the lock file path refers to, or null if it does not exist or keys are not supported
+     */
+    private Object getLockFileKey() {
+        try {
+            return Files.readAttributes(lockFile.toPath(), BasicFileAttributes.class).fileKey();
+        } catch (IOException ex) {
+            return null;
+        }
+    }
+
+    private static void closeChannel(FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException ex) {
+            LOG.error(ex.getMessage());
+        }
+    }
 
-        ByteBuffer buff = ByteBuffer.wrap(jvmName.replace("@", " ").
-                getBytes(StandardCharsets.UTF_8));
-        fileChannel.write(buff);
+    private void onLockAcquired(int retryCount, long lockAcquisitionStartNanoTime) {
+        state.locked = true;
+        state.lockAcquiredNanoTime = System.nanoTime();
+
+        retryPolicy.onLockAcquired(retryCount,
+                TimeUnit.NANOSECONDS.toMillis(state.lockAcquiredNanoTime - lockAcquisitionStartNanoTime));
+    }
+
+    private void writeJvmName(FileChannel fileChannel) throws IOException {
+        ByteBuffer buff = ByteBuffer.wrap(JVM_NAME_BYTES);
+        if (isLockFilePersistent()) {
+            fileChannel.write(buff, 0);
+            fileChannel.truncate(JVM_NAME_BYTES.length);
+        } else {
+            fileChannel.write(buff);
+        }
     }
 
     /**
-     * Release OS lock for lockFile,
+     * Releases the latest lock hold of current thread, does nothing if current thread does not hold the lock.
+     * Release OS lock for lockFile if it is the last hold of the thread and it is not used by other local readers,
      * delete lockFile if it was created by lock() method
      *
      * @throws IOException
      */
     void unlock() throws IOException {
-        LOG.debug(getLockProcessThreadId() + " releasing lock");
+        Deque<Boolean> holds = state.holds.get();
+        if (holds.isEmpty()) {
+            state.holds.remove();
+            return;
+        }
+        boolean write = holds.pop();
+        if (holds.isEmpty()) {
+            state.holds.remove();
+        }
 
+        if (write) {
+            try {
+                if (state.localLock.getWriteHoldCount() == 1) {
+                    LOG.debug(getLockProcessThreadId() + " releasing lock");
+                    releaseOsLock();
+                }
+            } finally {
+                state.localLock.writeLock().unlock();
+            }
+        } else {
+            try {
+                if (state.localLock.getReadHoldCount() == 1 && !state.localLock.isWriteLockedByCurrentThread()) {
+                    // not contended for long, as no reader acquires OS lock while others hold it
+                    state.readersLock.lock();
+                    try {
+                        state.readers--;
+                        if (state.readers == 0) {
+                            LOG.debug(getLockProcessThreadId() + " releasing lock");
+                            releaseOsLock();
+                        }
+                    } finally {
+                        state.readersLock.unlock();
+                    }
+                }
+            } finally {
+                state.localLock.readLock().unlock();
+            }
+        }
+    }
+
+    private void releaseOsLock() throws IOException {
         releaseResources();
 
-        if (locked) {
-            deleteLockFile();
-            locked = false;
+        if (state.locked) {
+            if (!isLockFilePersistent()) {
+                deleteLockFile();
+            }
+            state.locked = false;
+
+            long holdNanoseconds = System.nanoTime() - state.lockAcquiredNanoTime;
+            state.statistics.recordRelease(holdNanoseconds);
+            retryPolicy.onLockReleased(TimeUnit.NANOSECONDS.toMillis(holdNanoseconds));
         }
     }
 
@@ -160,17 +793,26 @@ class CrossProcessCacheFileLock {
         }
     }
 
+    /**
+     * Releases OS locks, closes lock file channel unless it is reused across lock cycles
+     */
     private void releaseResources() {
         try {
-            if (lock != null) {
-                lock.release();
+            if (state.lock != null) {
+                state.lock.release();
+                state.lock = null;
+            }
+            if (state.gateLock != null) {
+                state.gateLock.release();
+                state.gateLock = null;
             }
-            if (fileChannel != null) {
-                fileChannel.close();
+            if (state.fileChannel != null && (!isLockFilePersistent() || !state.fileChannel.isOpen())) {
+                state.fileChannel.close();
+                state.fileChannel = null;
             }
         }
         catch (IOException ex){
             LOG.error(ex.getMessage());
         }
     }
-}
\ No newline at end of file
+}
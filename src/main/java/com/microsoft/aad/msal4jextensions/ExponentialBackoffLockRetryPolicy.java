@@ -0,0 +1,72 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.aad.msal4jextensions;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Lock retry policy with exponentially growing delay between attempts.
+ * Delay starts from initial value, doubles after each failed attempt up to max value,
+ * and is randomized between half and full of that value (jitter), but is at least 1 ms,
+ * so processes which failed to acquire lock at the same time do not retry at the same time.
+ */
+public class ExponentialBackoffLockRetryPolicy implements ILockRetryPolicy {
+
+    private int initialDelayMilliseconds;
+    private int maxDelayMilliseconds;
+    private int retryNumber;
+
+    /**
+     * Constructor
+     *
+     * @param initialDelayMilliseconds Delay before the first retry in ms, must be 1 or more.
+     * @param maxDelayMilliseconds     Max delay between retries in ms, must be initialDelayMilliseconds or more.
+     * @param retryNumber              Number of retries, must be 1 or more.
+     */
+    public ExponentialBackoffLockRetryPolicy(int initialDelayMilliseconds,
+                                             int maxDelayMilliseconds,
+                                             int retryNumber) {
+        if (initialDelayMilliseconds < 1) {
+            throw new IllegalArgumentException("initialDelayMilliseconds value should be more than 0");
+        }
+        if (maxDelayMilliseconds < initialDelayMilliseconds) {
+            throw new IllegalArgumentException(
+                    "maxDelayMilliseconds value should not be less than initialDelayMilliseconds");
+        }
+        if (retryNumber < 1) {
+            throw new IllegalArgumentException("retryNumber value should be more than 0");
+        }
+        this.initialDelayMilliseconds = initialDelayMilliseconds;
+        this.maxDelayMilliseconds = maxDelayMilliseconds;
+        this.retryNumber = retryNumber;
+    }
+
+    @Override
+    public int getRetryNumber() {
+        return retryNumber;
+    }
+
+    @Override
+    public long getRetryDelayMilliseconds(int retryCount) {
+        long delay = getMaxRetryDelayMilliseconds(retryCount);
+
+        // half of 1 ms delay is 0, which would retry without waiting
+        return Math.max(1, delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1));
+    }
+
+    private long getMaxRetryDelayMilliseconds(int retryCount) {
+        int shift = Math.min(Math.max(retryCount - 1, 0), 30);
+
+        return Math.min((long) initialDelayMilliseconds << shift, maxDelayMilliseconds);
+    }
+
+    @Override
+    public long getTimeoutMilliseconds() {
+        long timeout = 0;
+        for (int retryCount = 1; retryCount <= retryNumber; retryCount++) {
+            timeout += getMaxRetryDelayMilliseconds(retryCount);
+        }
+        return timeout;
+    }
+}
@@ -0,0 +1,45 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.aad.msal4jextensions;
+
+/**
+ * Lock retry policy with fixed delay between attempts.
+ */
+public class FixedLockRetryPolicy implements ILockRetryPolicy {
+
+    private int retryDelayMilliseconds;
+    private int retryNumber;
+
+    /**
+     * Constructor
+     *
+     * @param retryDelayMilliseconds Delay between retries in ms, must be 1 or more.
+     * @param retryNumber            Number of retries, must be 1 or more.
+     */
+    public FixedLockRetryPolicy(int retryDelayMilliseconds, int retryNumber) {
+        if (retryDelayMilliseconds < 1) {
+            throw new IllegalArgumentException("retryDelayMilliseconds value should be more than 0");
+        }
+        if (retryNumber < 1) {
+            throw new IllegalArgumentException("retryNumber value should be more than 0");
+        }
+        this.retryDelayMilliseconds = retryDelayMilliseconds;
+        this.retryNumber = retryNumber;
+    }
+
+    @Override
+    public int getRetryNumber() {
+        return retryNumber;
+    }
+
+    @Override
+    public long getRetryDelayMilliseconds(int retryCount) {
+        return retryDelayMilliseconds;
+    }
+
+    @Override
+    public long getTimeoutMilliseconds() {
+        return (long) retryDelayMilliseconds * retryNumber;
+    }
+}
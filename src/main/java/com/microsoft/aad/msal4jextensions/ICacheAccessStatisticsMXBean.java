@@ -0,0 +1,132 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.aad.msal4jextensions;
+
+import java.util.Map;
+
+/**
+ * Management interface of I/O statistics of {@link PersistenceTokenCacheAccessAspect},
+ * collected since the aspect was created.
+ * Registered in platform MBean server if enabled by {@link PersistenceSettings.Builder#setStatisticsMBeanEnabled}.
+ */
+public interface ICacheAccessStatisticsMXBean {
+
+    /**
+     * @return Path of the cache file
+     */
+    String getCacheFilePath();
+
+    /**
+     * @return Number of cache reads from the storage
+     */
+    long getReadCount();
+
+    /**
+     * @return Number of bytes read from the storage
+     */
+    long getBytesRead();
+
+    /**
+     * @return Total time of reading the storage in microseconds
+     */
+    long getReadTimeMicroseconds();
+
+    /**
+     * @return Total time of deserializing the cache in microseconds
+     */
+    long getDeserializeTimeMicroseconds();
+
+    /**
+     * @return Number of cache writes to the storage
+     */
+    long getWriteCount();
+
+    /**
+     * @return Number of bytes written to the storage
+     */
+    long getBytesWritten();
+
+    /**
+     * @return Total time of writing the storage in microseconds
+     */
+    long getWriteTimeMicroseconds();
+
+    /**
+     * @return Total time of serializing the cache in microseconds
+     */
+    long getSerializeTimeMicroseconds();
+
+    /**
+     * @return Number of read accesses which skipped reloading the cache,
+     * because the cache file was not modified since it was last seen
+     */
+    long getSkippedReloadCount();
+
+    /**
+     * @return Number of write accesses which skipped writing the cache,
+     * because the serialized cache was identical to the content of the storage
+     */
+    long getSkippedWriteCount();
+
+    /**
+     * @return Number of cache reads which skipped deserializing the cache,
+     * because the content of the storage was not changed since it was loaded to the token cache
+     */
+    long getSkippedDeserializeCount();
+
+    /**
+     * @return Number of cache reads from the storage made in background by prefetch
+     */
+    long getPrefetchCount();
+
+    /**
+     * @return Number of cache reloads which loaded prefetched cache instead of reading the storage
+     */
+    long getPrefetchedReloadCount();
+
+    /**
+     * @return Number of cache writes coalesced by write-behind with an already pending write
+     */
+    long getCoalescedWriteCount();
+
+    /**
+     * @return Number of cross process lock acquisitions of the cache lock file
+     */
+    long getLockAcquisitionCount();
+
+    /**
+     * @return Total wait time of cross process lock acquisitions in microseconds
+     */
+    long getLockWaitTimeMicroseconds();
+
+    /**
+     * @return Number of failed cross process lock acquisitions
+     */
+    long getLockFailureCount();
+
+    /**
+     * @return Number of cache reads from the storage per client id
+     */
+    Map<String, Long> getReadCountByClientId();
+
+    /**
+     * @return Number of cache writes to the storage per client id
+     */
+    Map<String, Long> getWriteCountByClientId();
+
+    /**
+     * @return Number of skipped cache reloads per client id
+     */
+    Map<String, Long> getSkippedReloadCountByClientId();
+
+    /**
+     * @return Number of skipped cache writes per client id
+     */
+    Map<String, Long> getSkippedWriteCountByClientId();
+
+    /**
+     * @return Number of skipped cache deserializations per client id
+     */
+    Map<String, Long> getSkippedDeserializeCountByClientId();
+}
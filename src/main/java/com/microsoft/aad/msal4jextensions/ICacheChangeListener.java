@@ -0,0 +1,21 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.aad.msal4jextensions;
+
+/**
+ * Listener notified when the persisted cache is changed by another process or another aspect.
+ * Registered by {@link PersistenceTokenCacheAccessAspect#addCacheChangeListener}.
+ */
+@FunctionalInterface
+public interface ICacheChangeListener {
+
+    /**
+     * Called asynchronously after the persisted cache was changed. Notifications may be coalesced,
+     * so a listener is not guaranteed to be called for every single change, and in rare cases it may be called
+     * for a change made by the aspect itself, so the handling should be idempotent.
+     *
+     * @param event Event describing the new state of the persisted cache
+     */
+    void onCacheChanged(CacheChangeEvent event);
+}
@@ -0,0 +1,45 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.aad.msal4jextensions;
+
+/**
+ * Policy which defines how acquisition of cross process cache lock is retried.
+ * Built-in implementations:
+ * {@link FixedLockRetryPolicy}, {@link ExponentialBackoffLockRetryPolicy}, {@link AdaptiveLockRetryPolicy}
+ */
+public interface ILockRetryPolicy {
+
+    /**
+     * @return Number of attempts to acquire lock, must be 1 or more.
+     */
+    int getRetryNumber();
+
+    /**
+     * @param retryCount Number of failed attempts so far, starting from 1.
+     * @return Delay before the next attempt in ms.
+     */
+    long getRetryDelayMilliseconds(int retryCount);
+
+    /**
+     * @return Overall time limit in ms for waiting on the lock in blocking wait mode.
+     */
+    long getTimeoutMilliseconds();
+
+    /**
+     * Notifies the policy that the lock was acquired.
+     *
+     * @param retryCount       Number of failed attempts before the lock was acquired.
+     * @param waitMilliseconds Time spent waiting for the lock in ms.
+     */
+    default void onLockAcquired(int retryCount, long waitMilliseconds) {
+    }
+
+    /**
+     * Notifies the policy that the lock was released.
+     *
+     * @param holdMilliseconds Time the lock was held in ms.
+     */
+    default void onLockReleased(long holdMilliseconds) {
+    }
+}
@@ -0,0 +1,139 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.aad.msal4jextensions;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Java Flight Recorder events of cache lock and cache access phases.
+ * Must only be loaded if JFR is available, use {@link CacheEvents} instead.
+ * Event types are looked up once, so a disabled event is detected without allocating the event.
+ */
+final class JfrCacheEvents {
+
+    private static final String CATEGORY = "MSAL Persistence Extension";
+    private static final String NAME_PREFIX = "com.microsoft.aad.msal4jextensions.";
+
+    private JfrCacheEvents() {
+    }
+
+    @Name(NAME_PREFIX + "LockAcquire")
+    @Label("Cache Lock Acquire")
+    @Description("Acquisition of cross process cache lock")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    static class LockAcquireEvent extends Event implements CacheEvents.ILockEvent {
+        @Label("Lock File")
+        String lockFile;
+
+        @Label("Write")
+        boolean write;
+
+        @Label("Retry Count")
+        int retryCount;
+
+        @Label("Acquired")
+        boolean acquired;
+
+        @Override
+        public void complete(String lockFilePath, boolean write, int retryCount, boolean acquired) {
+            end();
+            if (shouldCommit()) {
+                this.lockFile = lockFilePath;
+                this.write = write;
+                this.retryCount = retryCount;
+                this.acquired = acquired;
+                commit();
+            }
+        }
+    }
+
+    @Category(CATEGORY)
+    @StackTrace(false)
+    abstract static class AccessEvent extends Event implements CacheEvents.IAccessEvent {
+        @Label("Cache File")
+        String cacheFile;
+
+        @Label("Size")
+        @DataAmount
+        int size;
+
+        @Override
+        public void complete(String cacheFilePath, int size) {
+            end();
+            if (shouldCommit()) {
+                this.cacheFile = cacheFilePath;
+                this.size = size;
+                commit();
+            }
+        }
+    }
+
+    @Name(NAME_PREFIX + "Read")
+    @Label("Cache Read")
+    @Description("Read of serialized cache from the storage")
+    static class ReadEvent extends AccessEvent {
+    }
+
+    @Name(NAME_PREFIX + "Write")
+    @Label("Cache Write")
+    @Description("Write of serialized cache to the storage")
+    static class WriteEvent extends AccessEvent {
+    }
+
+    @Name(NAME_PREFIX + "Deserialize")
+    @Label("Cache Deserialize")
+    @Description("Deserialization of the cache read from the storage")
+    static class DeserializeEvent extends AccessEvent {
+    }
+
+    @Name(NAME_PREFIX + "Serialize")
+    @Label("Cache Serialize")
+    @Description("Serialization of the cache to be written to the storage")
+    static class SerializeEvent extends AccessEvent {
+    }
+
+    private static final EventType LOCK_ACQUIRE_TYPE = EventType.getEventType(LockAcquireEvent.class);
+    private static final EventType READ_TYPE = EventType.getEventType(ReadEvent.class);
+    private static final EventType WRITE_TYPE = EventType.getEventType(WriteEvent.class);
+    private static final EventType DESERIALIZE_TYPE = EventType.getEventType(DeserializeEvent.class);
+    private static final EventType SERIALIZE_TYPE = EventType.getEventType(SerializeEvent.class);
+
+    static CacheEvents.ILockEvent beginLockAcquire(CacheEvents.ILockEvent disabledEvent) {
+        if (!LOCK_ACQUIRE_TYPE.isEnabled()) {
+            return disabledEvent;
+        }
+        LockAcquireEvent event = new LockAcquireEvent();
+        event.begin();
+        return event;
+    }
+
+    static CacheEvents.IAccessEvent beginRead(CacheEvents.IAccessEvent disabledEvent) {
+        return READ_TYPE.isEnabled() ? begin(new ReadEvent()) : disabledEvent;
+    }
+
+    static CacheEvents.IAccessEvent beginWrite(CacheEvents.IAccessEvent disabledEvent) {
+        return WRITE_TYPE.isEnabled() ? begin(new WriteEvent()) : disabledEvent;
+    }
+
+    static CacheEvents.IAccessEvent beginDeserialize(CacheEvents.IAccessEvent disabledEvent) {
+        return DESERIALIZE_TYPE.isEnabled() ? begin(new DeserializeEvent()) : disabledEvent;
+    }
+
+    static CacheEvents.IAccessEvent beginSerialize(CacheEvents.IAccessEvent disabledEvent) {
+        return SERIALIZE_TYPE.isEnabled() ? begin(new SerializeEvent()) : disabledEvent;
+    }
+
+    private static CacheEvents.IAccessEvent begin(AccessEvent event) {
+        event.begin();
+        return event;
+    }
+}
@@ -0,0 +1,162 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.aad.msal4jextensions;
+
+import java.util.Arrays;
+
+/**
+ * Snapshot of contention statistics of cross process cache lock, collected since the process start.
+ * Statistics are shared by all cache access aspects of the process which use the same lock file.
+ *
+ * Wait time is the time from lock request to lock acquisition, including waiting for other threads
+ * of the process. Hold time is the time OS lock was held, local readers share one OS lock hold.
+ * Times are recorded in histograms with power of two buckets of microseconds:
+ * bucket 0 counts times below 1 us, bucket i counts times from 2^(i-1) us up to 2^i us,
+ * the last bucket also counts all longer times.
+ */
+public final class LockStatistics {
+
+    /**
+     * Number of buckets of wait time and hold time histograms
+     */
+    public static final int HISTOGRAM_BUCKETS = 32;
+
+    private final long acquisitions;
+    private final long retries;
+    private final long failures;
+    private final long totalWaitMicroseconds;
+    private final long totalHoldMicroseconds;
+    private final long[] waitTimeHistogram;
+    private final long[] holdTimeHistogram;
+
+    LockStatistics(long acquisitions, long retries, long failures,
+                   long totalWaitMicroseconds, long totalHoldMicroseconds,
+                   long[] waitTimeHistogram, long[] holdTimeHistogram) {
+        this.acquisitions = acquisitions;
+        this.retries = retries;
+        this.failures = failures;
+        this.totalWaitMicroseconds = totalWaitMicroseconds;
+        this.totalHoldMicroseconds = totalHoldMicroseconds;
+        this.waitTimeHistogram = waitTimeHistogram;
+        this.holdTimeHistogram = holdTimeHistogram;
+    }
+
+    /**
+     * @return Index of histogram bucket which counts given time
+     */
+    static int getBucketIndex(long microseconds) {
+        return Math.min(HISTOGRAM_BUCKETS - 1, 64 - Long.numberOfLeadingZeros(Math.max(0, microseconds)));
+    }
+
+    /**
+     * @param bucketIndex Index of histogram bucket
+     * @return Exclusive upper bound of times counted by the bucket in microseconds,
+     * {@link Long#MAX_VALUE} for the last bucket
+     */
+    public static long getBucketUpperBoundMicroseconds(int bucketIndex) {
+        if (bucketIndex < 0 || bucketIndex >= HISTOGRAM_BUCKETS) {
+            throw new IllegalArgumentException("bucketIndex value should be from 0 to " + (HISTOGRAM_BUCKETS - 1));
+        }
+        return bucketIndex == HISTOGRAM_BUCKETS - 1 ? Long.MAX_VALUE : 1L << bucketIndex;
+    }
+
+    /**
+     * @return Number of lock acquisitions, nested acquisitions of already held lock are not counted
+     */
+    public long getAcquisitions() {
+        return acquisitions;
+    }
+
+    /**
+     * @return Number of retries of OS lock acquisition attempts
+     */
+    public long getRetries() {
+        return retries;
+    }
+
+    /**
+     * @return Number of failed lock acquisitions
+     */
+    public long getFailures() {
+        return failures;
+    }
+
+    /**
+     * @return Total wait time of lock acquisitions in microseconds
+     */
+    public long getTotalWaitMicroseconds() {
+        return totalWaitMicroseconds;
+    }
+
+    /**
+     * @return Total hold time of OS lock in microseconds
+     */
+    public long getTotalHoldMicroseconds() {
+        return totalHoldMicroseconds;
+    }
+
+    /**
+     * @return Histogram of wait time of lock acquisitions
+     */
+    public long[] getWaitTimeHistogram() {
+        return waitTimeHistogram.clone();
+    }
+
+    /**
+     * @return Histogram of hold time of OS lock
+     */
+    public long[] getHoldTimeHistogram() {
+        return holdTimeHistogram.clone();
+    }
+
+    /**
+     * @param percentile Percentile, from 0 to 100
+     * @return Upper bound of histogram bucket which contains wait time percentile in microseconds,
+     * 0 if no lock was acquired
+     */
+    public long getWaitTimePercentileMicroseconds(double percentile) {
+        return getPercentile(waitTimeHistogram, percentile);
+    }
+
+    /**
+     * @param percentile Percentile, from 0 to 100
+     * @return Upper bound of histogram bucket which contains hold time percentile in microseconds,
+     * 0 if no lock was held
+     */
+    public long getHoldTimePercentileMicroseconds(double percentile) {
+        return getPercentile(holdTimeHistogram, percentile);
+    }
+
+    private static long getPercentile(long[] histogram, double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("percentile value should be from 0 to 100");
+        }
+        long count = Arrays.stream(histogram).sum();
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(count * percentile / 100));
+        long seen = 0;
+        for (int i = 0; i < histogram.length; i++) {
+            seen += histogram[i];
+            if (seen >= rank) {
+                return getBucketUpperBoundMicroseconds(i);
+            }
+        }
+        return getBucketUpperBoundMicroseconds(histogram.length - 1);
+    }
+
+    @Override
+    public String toString() {
+        return "LockStatistics{" +
+                "acquisitions=" + acquisitions +
+                ", retries=" + retries +
+                ", failures=" + failures +
+                ", totalWaitMicroseconds=" + totalWaitMicroseconds +
+                ", totalHoldMicroseconds=" + totalHoldMicroseconds +
+                ", waitTimeHistogram=" + Arrays.toString(waitTimeHistogram) +
+                ", holdTimeHistogram=" + Arrays.toString(holdTimeHistogram) +
+                '}';
+    }
+}
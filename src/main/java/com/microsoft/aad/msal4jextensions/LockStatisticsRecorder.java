@@ -0,0 +1,73 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.aad.msal4jextensions;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects contention statistics of cross process cache lock.
+ * Uses striped counters, so recording does not add contention to the lock path,
+ * counters are summed up only when {@link #snapshot()} is taken.
+ */
+class LockStatisticsRecorder {
+
+    private final LongAdder acquisitions = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder totalWaitMicroseconds = new LongAdder();
+    private final LongAdder totalHoldMicroseconds = new LongAdder();
+    private final LongAdder[] waitTimeHistogram = createHistogram();
+    private final LongAdder[] holdTimeHistogram = createHistogram();
+
+    private static LongAdder[] createHistogram() {
+        LongAdder[] histogram = new LongAdder[LockStatistics.HISTOGRAM_BUCKETS];
+        for (int i = 0; i < histogram.length; i++) {
+            histogram[i] = new LongAdder();
+        }
+        return histogram;
+    }
+
+    void recordAcquisition(long waitNanoseconds) {
+        long waitMicroseconds = TimeUnit.NANOSECONDS.toMicros(waitNanoseconds);
+
+        acquisitions.increment();
+        totalWaitMicroseconds.add(waitMicroseconds);
+        waitTimeHistogram[LockStatistics.getBucketIndex(waitMicroseconds)].increment();
+    }
+
+    void recordRetry() {
+        retries.increment();
+    }
+
+    void recordFailure() {
+        failures.increment();
+    }
+
+    void recordRelease(long holdNanoseconds) {
+        long holdMicroseconds = TimeUnit.NANOSECONDS.toMicros(holdNanoseconds);
+
+        totalHoldMicroseconds.add(holdMicroseconds);
+        holdTimeHistogram[LockStatistics.getBucketIndex(holdMicroseconds)].increment();
+    }
+
+    LockStatistics snapshot() {
+        return new LockStatistics(
+                acquisitions.sum(),
+                retries.sum(),
+                failures.sum(),
+                totalWaitMicroseconds.sum(),
+                totalHoldMicroseconds.sum(),
+                sum(waitTimeHistogram),
+                sum(holdTimeHistogram));
+    }
+
+    private static long[] sum(LongAdder[] histogram) {
+        long[] counts = new long[histogram.length];
+        for (int i = 0; i < histogram.length; i++) {
+            counts[i] = histogram[i].sum();
+        }
+        return counts;
+    }
+}
@@ -4,6 +4,9 @@
 package com.microsoft.aad.msal4jextensions;
 
 import java.nio.file.Path;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+import java.util.zip.Deflater;
 
 /**
  * An immutable class containing persistence settings for MSAL caches in various platforms.
@@ -28,6 +31,34 @@ public class PersistenceSettings {
 
     private int lockRetryDelayMilliseconds;
     private int lockRetryNumber;
+    private Supplier<ILockRetryPolicy> lockRetryPolicyFactory;
+
+    private boolean sharedReadLock;
+    private boolean lockBlockingWait;
+    private boolean lockFilePersistent;
+
+    private boolean statisticsMBeanEnabled;
+
+    private boolean generationFileEnabled;
+
+    private boolean cacheFileHeaderEnabled;
+
+    private boolean cacheDirectoryWatchEnabled;
+
+    private boolean prefetchEnabled;
+    private Executor prefetchExecutor;
+    private long prefetchMaxStalenessMillis;
+
+    private boolean writeBehindEnabled;
+    private long writeBehindWindowMillis;
+
+    private boolean journalEnabled;
+    private long journalCompactionThresholdBytes;
+
+    private boolean cacheCompressionEnabled;
+    private int cacheCompressionLevel;
+
+    private boolean keyringBinarySecretEnabled;
 
     private PersistenceSettings(String cacheFileName,
                                 Path cacheDirectoryPath,
@@ -42,7 +73,25 @@ public class PersistenceSettings {
                                 String keyringAttribute2Value,
                                 boolean linuxUseUnprotectedFileAsCacheStorage,
                                 int lockRetryDelayMilliseconds,
-                                int lockRetryNumber) {
+                                int lockRetryNumber,
+                                Supplier<ILockRetryPolicy> lockRetryPolicyFactory,
+                                boolean sharedReadLock,
+                                boolean lockBlockingWait,
+                                boolean lockFilePersistent,
+                                boolean statisticsMBeanEnabled,
+                                boolean generationFileEnabled,
+                                boolean cacheFileHeaderEnabled,
+                                boolean cacheDirectoryWatchEnabled,
+                                boolean prefetchEnabled,
+                                Executor prefetchExecutor,
+                                long prefetchMaxStalenessMillis,
+                                boolean writeBehindEnabled,
+                                long writeBehindWindowMillis,
+                                boolean journalEnabled,
+                                long journalCompactionThresholdBytes,
+                                boolean cacheCompressionEnabled,
+                                int cacheCompressionLevel,
+                                boolean keyringBinarySecretEnabled) {
 
         this.cacheFileName = cacheFileName;
         this.cacheDirectoryPath = cacheDirectoryPath;
@@ -58,6 +107,24 @@ public class PersistenceSettings {
         this.linuxUseUnprotectedFileAsCacheStorage = linuxUseUnprotectedFileAsCacheStorage;
         this.lockRetryDelayMilliseconds = lockRetryDelayMilliseconds;
         this.lockRetryNumber = lockRetryNumber;
+        this.lockRetryPolicyFactory = lockRetryPolicyFactory;
+        this.sharedReadLock = sharedReadLock;
+        this.lockBlockingWait = lockBlockingWait;
+        this.lockFilePersistent = lockFilePersistent;
+        this.statisticsMBeanEnabled = statisticsMBeanEnabled;
+        this.generationFileEnabled = generationFileEnabled;
+        this.cacheFileHeaderEnabled = cacheFileHeaderEnabled;
+        this.cacheDirectoryWatchEnabled = cacheDirectoryWatchEnabled;
+        this.prefetchEnabled = prefetchEnabled;
+        this.prefetchExecutor = prefetchExecutor;
+        this.prefetchMaxStalenessMillis = prefetchMaxStalenessMillis;
+        this.writeBehindEnabled = writeBehindEnabled;
+        this.writeBehindWindowMillis = writeBehindWindowMillis;
+        this.journalEnabled = journalEnabled;
+        this.journalCompactionThresholdBytes = journalCompactionThresholdBytes;
+        this.cacheCompressionEnabled = cacheCompressionEnabled;
+        this.cacheCompressionLevel = cacheCompressionLevel;
+        this.keyringBinarySecretEnabled = keyringBinarySecretEnabled;
     }
 
     /**
@@ -158,6 +225,137 @@ public class PersistenceSettings {
         return lockRetryNumber;
     }
 
+    /**
+     * @return Lock retry policy created by the factory set with {@link Builder#setLockRetryPolicyFactory(Supplier)},
+     * the policy set with {@link Builder#setLockRetryPolicy(ILockRetryPolicy)},
+     * or new {@link FixedLockRetryPolicy} based on lock retry delay and number if the policy was not set explicitly.
+     */
+    public ILockRetryPolicy getLockRetryPolicy() {
+        if (lockRetryPolicyFactory == null) {
+            return new FixedLockRetryPolicy(lockRetryDelayMilliseconds, lockRetryNumber);
+        }
+        return lockRetryPolicyFactory.get();
+    }
+
+    /**
+     * @return is shared cross process lock used for reading the cache
+     */
+    public boolean isSharedReadLock() {
+        return sharedReadLock;
+    }
+
+    /**
+     * @return is blocking OS lock call used to wait for the lock instead of polling
+     */
+    public boolean isLockBlockingWait() {
+        return lockBlockingWait;
+    }
+
+    /**
+     * @return is lock file kept open across lock cycles instead of being created and deleted for each of them
+     */
+    public boolean isLockFilePersistent() {
+        return lockFilePersistent;
+    }
+
+    /**
+     * @return is MBean with cache access statistics registered in platform MBean server
+     */
+    public boolean isStatisticsMBeanEnabled() {
+        return statisticsMBeanEnabled;
+    }
+
+    /**
+     * @return is memory-mapped generation file used to detect cache changes
+     */
+    public boolean isGenerationFileEnabled() {
+        return generationFileEnabled;
+    }
+
+    /**
+     * @return is cache file written with header holding generation and checksum of the cache
+     */
+    public boolean isCacheFileHeaderEnabled() {
+        return cacheFileHeaderEnabled;
+    }
+
+    /**
+     * @return is cache directory watched for changes instead of checking cache file on each access
+     */
+    public boolean isCacheDirectoryWatchEnabled() {
+        return cacheDirectoryWatchEnabled;
+    }
+
+    /**
+     * @return is cache changed by other processes read in background
+     */
+    public boolean isPrefetchEnabled() {
+        return prefetchEnabled;
+    }
+
+    /**
+     * @return Executor on which the cache is prefetched, null for the default one
+     */
+    public Executor getPrefetchExecutor() {
+        return prefetchExecutor;
+    }
+
+    /**
+     * @return Maximum age of prefetched cache in milliseconds, after which it is not loaded
+     */
+    public long getPrefetchMaxStalenessMillis() {
+        return prefetchMaxStalenessMillis;
+    }
+
+    /**
+     * @return are cache writes coalesced and made on background writer thread
+     */
+    public boolean isWriteBehindEnabled() {
+        return writeBehindEnabled;
+    }
+
+    /**
+     * @return Time in milliseconds for which cache writes are coalesced in write-behind mode
+     */
+    public long getWriteBehindWindowMillis() {
+        return writeBehindWindowMillis;
+    }
+
+    /**
+     * @return are changes of the cache appended to a journal instead of rewriting the cache file
+     */
+    public boolean isJournalEnabled() {
+        return journalEnabled;
+    }
+
+    /**
+     * @return Size of the journal in bytes after which it is folded into the cache file
+     */
+    public long getJournalCompactionThresholdBytes() {
+        return journalCompactionThresholdBytes;
+    }
+
+    /**
+     * @return is the cache compressed before it is stored
+     */
+    public boolean isCacheCompressionEnabled() {
+        return cacheCompressionEnabled;
+    }
+
+    /**
+     * @return Deflate compression level of the cache
+     */
+    public int getCacheCompressionLevel() {
+        return cacheCompressionLevel;
+    }
+
+    /**
+     * @return is the cache stored in KeyRing as binary secret instead of Base64 encoded password
+     */
+    public boolean isKeyringBinarySecretEnabled() {
+        return keyringBinarySecretEnabled;
+    }
+
     private static void validateArgument(String parameter, String value) {
         if (value == null || value.isEmpty()) {
             throw new IllegalArgumentException(parameter + " null or Empty");
@@ -204,6 +402,34 @@ public class PersistenceSettings {
 
         private int lockRetryDelayMilliseconds = 100;
         private int lockRetryNumber = 60;
+        private Supplier<ILockRetryPolicy> lockRetryPolicyFactory;
+
+        private boolean sharedReadLock = false;
+        private boolean lockBlockingWait = false;
+        private boolean lockFilePersistent = false;
+
+        private boolean statisticsMBeanEnabled = false;
+
+        private boolean generationFileEnabled = false;
+
+        private boolean cacheFileHeaderEnabled = false;
+
+        private boolean cacheDirectoryWatchEnabled = false;
+
+        private boolean prefetchEnabled = false;
+        private Executor prefetchExecutor;
+        private long prefetchMaxStalenessMillis = 1000;
+
+        private boolean writeBehindEnabled = false;
+        private long writeBehindWindowMillis = 50;
+
+        private boolean journalEnabled = false;
+        private long journalCompactionThresholdBytes = 1024 * 1024;
+
+        private boolean cacheCompressionEnabled = false;
+        private int cacheCompressionLevel = Deflater.BEST_SPEED;
+
+        private boolean keyringBinarySecretEnabled = false;
 
         private Builder(String cacheFileName, Path cacheDirectoryPath) {
             validateArgument("cacheFileName", cacheFileName);
@@ -293,10 +519,10 @@ public class PersistenceSettings {
          */
         public Builder setLockRetry(int delayMilliseconds, int retryNumber) {
 
-            if (lockRetryDelayMilliseconds < 1) {
+            if (delayMilliseconds < 1) {
                 throw new IllegalArgumentException("delayMilliseconds value should be more than 0");
             }
-            if (lockRetryNumber < 1) {
+            if (retryNumber < 1) {
                 throw new IllegalArgumentException("retryNumber value should be more than 0");
             }
 
@@ -306,6 +532,348 @@ public class PersistenceSettings {
             return this;
         }
 
+        /**
+         * Augments this builder with lock retry policy, for example {@link ExponentialBackoffLockRetryPolicy}.
+         * The policy instance is shared by all cache access aspects created with these settings,
+         * so it must not keep state of a single lock. Use {@link #setLockRetryPolicyFactory(Supplier)}
+         * for stateful policies like {@link AdaptiveLockRetryPolicy}.
+         * Overrides settings of {@link #setLockRetry(int, int)}.
+         *
+         * @param lockRetryPolicy Lock retry policy.
+         * @return The augmented builder.
+         */
+        public Builder setLockRetryPolicy(ILockRetryPolicy lockRetryPolicy) {
+            if (lockRetryPolicy == null) {
+                throw new IllegalArgumentException("lockRetryPolicy can not be null");
+            }
+            this.lockRetryPolicyFactory = () -> lockRetryPolicy;
+
+            return this;
+        }
+
+        /**
+         * Augments this builder with factory of lock retry policy, which is called once for each cache access aspect,
+         * so that a stateful policy like {@link AdaptiveLockRetryPolicy} observes only the lock it is used for,
+         * for example {@code () -> new AdaptiveLockRetryPolicy(10, 500, 60)}.
+         * Overrides settings of {@link #setLockRetry(int, int)} and {@link #setLockRetryPolicy(ILockRetryPolicy)}.
+         *
+         * @param lockRetryPolicyFactory Factory creating new lock retry policy on each call.
+         * @return The augmented builder.
+         */
+        public Builder setLockRetryPolicyFactory(Supplier<ILockRetryPolicy> lockRetryPolicyFactory) {
+            if (lockRetryPolicyFactory == null) {
+                throw new IllegalArgumentException("lockRetryPolicyFactory can not be null");
+            }
+            this.lockRetryPolicyFactory = lockRetryPolicyFactory;
+
+            return this;
+        }
+
+        /**
+         * Augments this builder with shared read lock setting.
+         * If enabled, processes reading the cache acquire shared lock and do not block each other,
+         * processes writing the cache acquire exclusive lock and have preference over new readers.
+         * Lock file is not deleted after the lock is released in this mode,
+         * so the setting should be enabled for all processes sharing the cache.
+         * Default value is false.
+         *
+         * @param sharedReadLock boolean value
+         * @return The augmented builder.
+         */
+        public Builder setSharedReadLock(boolean sharedReadLock) {
+            this.sharedReadLock = sharedReadLock;
+
+            return this;
+        }
+
+        /**
+         * Augments this builder with lock blocking wait setting.
+         * If enabled, a process waiting for the lock parks on blocking OS lock call
+         * and wakes up as soon as the lock is released, instead of polling with retry delay.
+         * Overall wait time is limited by timeout of lock retry policy,
+         * which is delayMilliseconds * retryNumber for {@link #setLockRetry(int, int)} settings.
+         * Lock file is not deleted after the lock is released in this mode,
+         * so the setting should be enabled for all processes sharing the cache.
+         * Default value is false.
+         *
+         * @param lockBlockingWait boolean value
+         * @return The augmented builder.
+         */
+        public Builder setLockBlockingWait(boolean lockBlockingWait) {
+            this.lockBlockingWait = lockBlockingWait;
+
+            return this;
+        }
+
+        /**
+         * Augments this builder with persistent lock file setting.
+         * If enabled, lock file is created and opened once and kept open for the lifetime of
+         * {@link PersistenceTokenCacheAccessAspect}, so each lock cycle only acquires and releases OS lock,
+         * instead of creating, opening, closing and deleting the lock file.
+         * The setting should be enabled for all processes sharing the cache,
+         * shared read lock and lock blocking wait modes always use persistent lock file.
+         * Default value is false.
+         *
+         * @param lockFilePersistent boolean value
+         * @return The augmented builder.
+         */
+        public Builder setLockFilePersistent(boolean lockFilePersistent) {
+            this.lockFilePersistent = lockFilePersistent;
+
+            return this;
+        }
+
+        /**
+         * Augments this builder with statistics MBean setting.
+         * If enabled, each {@link PersistenceTokenCacheAccessAspect} registers {@link ICacheAccessStatisticsMXBean}
+         * with its cache read and write statistics in platform MBean server.
+         * Statistics are collected regardless of this setting,
+         * see {@link PersistenceTokenCacheAccessAspect#getCacheAccessStatistics()}.
+         * Default value is false.
+         *
+         * @param statisticsMBeanEnabled boolean value
+         * @return The augmented builder.
+         */
+        public Builder setStatisticsMBeanEnabled(boolean statisticsMBeanEnabled) {
+            this.statisticsMBeanEnabled = statisticsMBeanEnabled;
+
+            return this;
+        }
+
+        /**
+         * Augments this builder with generation file setting.
+         * If enabled, a sidecar file next to the cache file holds generation counter of the cache,
+         * which is memory-mapped by every process and incremented by each cache write.
+         * Checking if the cache was changed since it was loaded is then a memory read
+         * instead of reading attributes of the cache file.
+         * Changes made by processes which do not use the generation file are not detected,
+         * so the setting should be enabled for all processes sharing the cache.
+         * Default value is false.
+         *
+         * @param generationFileEnabled boolean value
+         * @return The augmented builder.
+         */
+        public Builder setGenerationFileEnabled(boolean generationFileEnabled) {
+            this.generationFileEnabled = generationFileEnabled;
+
+            return this;
+        }
+
+        /**
+         * Augments this builder with cache file header setting.
+         * If enabled, cache stored in a file is written preceded by a header holding
+         * format version, generation, length and CRC32 checksum of the payload,
+         * so a torn or corrupted cache file is detected and treated as missing.
+         * Cache files with and without header are read regardless of this setting.
+         * Applies only to the cache stored in a file, i.e. on Windows and
+         * on Linux with unprotected file storage.
+         * Default value is false.
+         *
+         * @param cacheFileHeaderEnabled boolean value
+         * @return The augmented builder.
+         */
+        public Builder setCacheFileHeaderEnabled(boolean cacheFileHeaderEnabled) {
+            this.cacheFileHeaderEnabled = cacheFileHeaderEnabled;
+
+            return this;
+        }
+
+        /**
+         * Augments this builder with cache directory watch setting.
+         * If enabled, the cache directory is watched by a background daemon thread,
+         * which marks the cache as changed when the cache file is modified or replaced.
+         * Read access then checks only that mark, without any file system call,
+         * unless the cache was changed. The thread is shared by all aspects watching the same directory.
+         * Watching relies on native file change notifications, such as inotify on Linux;
+         * where they are not available (e.g. macOS) changes are detected with a delay of several seconds.
+         * Ignored if generation file is enabled.
+         * Default value is false.
+         *
+         * @param cacheDirectoryWatchEnabled boolean value
+         * @return The augmented builder.
+         */
+        public Builder setCacheDirectoryWatchEnabled(boolean cacheDirectoryWatchEnabled) {
+            this.cacheDirectoryWatchEnabled = cacheDirectoryWatchEnabled;
+
+            return this;
+        }
+
+        /**
+         * Augments this builder with prefetch setting.
+         * If enabled, the cache directory is watched, and when the cache is changed by another process
+         * the cache is read in background into a ready snapshot. The next read access then loads
+         * the snapshot instead of reading the storage. Write access always reads the storage
+         * under the lock. Default value is false.
+         *
+         * @param prefetchEnabled boolean value
+         * @return The augmented builder.
+         */
+        public Builder setPrefetchEnabled(boolean prefetchEnabled) {
+            this.prefetchEnabled = prefetchEnabled;
+
+            return this;
+        }
+
+        /**
+         * Augments this builder with executor on which the cache is prefetched.
+         * By default a daemon thread shared by all aspects is used.
+         *
+         * @param prefetchExecutor Executor
+         * @return The augmented builder.
+         */
+        public Builder setPrefetchExecutor(Executor prefetchExecutor) {
+            if (prefetchExecutor == null) {
+                throw new IllegalArgumentException("prefetchExecutor can not be null");
+            }
+            this.prefetchExecutor = prefetchExecutor;
+
+            return this;
+        }
+
+        /**
+         * Augments this builder with maximum staleness of prefetched cache.
+         * Prefetched cache older than that is not loaded, the storage is read instead.
+         * It bounds for how long read access can see prefetched cache while a newer change
+         * is not prefetched yet. Default value is 1000 milliseconds.
+         *
+         * @param prefetchMaxStalenessMillis Maximum age of prefetched cache in milliseconds
+         * @return The augmented builder.
+         */
+        public Builder setPrefetchMaxStalenessMillis(long prefetchMaxStalenessMillis) {
+            if (prefetchMaxStalenessMillis < 0) {
+                throw new IllegalArgumentException("prefetchMaxStalenessMillis can not be negative");
+            }
+            this.prefetchMaxStalenessMillis = prefetchMaxStalenessMillis;
+
+            return this;
+        }
+
+        /**
+         * Augments this builder with write-behind setting.
+         * If enabled, cache access does not write changes of the token cache to the storage,
+         * nor holds the lock while the token cache is accessed. Instead, changes are written by a background
+         * writer thread under the lock, coalescing all changes made within the write-behind window
+         * into a single write. Pending changes are written by
+         * {@link PersistenceTokenCacheAccessAspect#flush()} and on JVM shutdown.
+         * <p>
+         * Changes are durable only once written. While changes are pending the cache is not reloaded.
+         * If the cache was changed meanwhile by other processes, the pending write merges added, changed
+         * and removed entries of the cache into the stored cache, and an entry changed by both takes the value
+         * of this process. The mode suits a process which is the only or main writer of the cache.
+         * Default value is false.
+         *
+         * @param writeBehindEnabled boolean value
+         * @return The augmented builder.
+         */
+        public Builder setWriteBehindEnabled(boolean writeBehindEnabled) {
+            this.writeBehindEnabled = writeBehindEnabled;
+
+            return this;
+        }
+
+        /**
+         * Augments this builder with write-behind window, time since the first pending change
+         * after which changes are written. Default value is 50 milliseconds.
+         *
+         * @param writeBehindWindowMillis Write-behind window in milliseconds
+         * @return The augmented builder.
+         */
+        public Builder setWriteBehindWindowMillis(long writeBehindWindowMillis) {
+            if (writeBehindWindowMillis < 0) {
+                throw new IllegalArgumentException("writeBehindWindowMillis can not be negative");
+            }
+            this.writeBehindWindowMillis = writeBehindWindowMillis;
+
+            return this;
+        }
+
+        /**
+         * Augments this builder with journal setting.
+         * If enabled, a cache write appends changed entries of the cache to a journal file
+         * next to the cache file instead of rewriting the whole cache file, and a read replays
+         * the journal on top of the cache file. Once the journal grows over compaction threshold,
+         * it is folded into the cache file in background.
+         * Applies only to the cache stored in a file, i.e. on Windows and
+         * on Linux with unprotected file storage. The setting must be enabled for all processes
+         * sharing the cache, otherwise changes in the journal are not seen by them.
+         * Default value is false.
+         *
+         * @param journalEnabled boolean value
+         * @return The augmented builder.
+         */
+        public Builder setJournalEnabled(boolean journalEnabled) {
+            this.journalEnabled = journalEnabled;
+
+            return this;
+        }
+
+        /**
+         * Augments this builder with journal compaction threshold.
+         * Default value is 1 MiB.
+         *
+         * @param journalCompactionThresholdBytes Size of the journal in bytes after which it is compacted
+         * @return The augmented builder.
+         */
+        public Builder setJournalCompactionThresholdBytes(long journalCompactionThresholdBytes) {
+            if (journalCompactionThresholdBytes < 0) {
+                throw new IllegalArgumentException("journalCompactionThresholdBytes can not be negative");
+            }
+            this.journalCompactionThresholdBytes = journalCompactionThresholdBytes;
+
+            return this;
+        }
+
+        /**
+         * Augments this builder with cache compression setting.
+         * If enabled, the cache is compressed with Deflate before it is stored in the file, key chain or key ring,
+         * which pays off for large caches, as token caches compress several times.
+         * Cache stored without compression is still read, so the setting can be enabled for existing caches,
+         * but processes sharing the cache must all be able to read compressed cache.
+         * Not applied to the journaled cache file, see {@link #setJournalEnabled(boolean)}.
+         * Default value is false.
+         *
+         * @param cacheCompressionEnabled boolean value
+         * @return The augmented builder.
+         */
+        public Builder setCacheCompressionEnabled(boolean cacheCompressionEnabled) {
+            this.cacheCompressionEnabled = cacheCompressionEnabled;
+
+            return this;
+        }
+
+        /**
+         * Augments this builder with cache compression level.
+         * Default value is {@link Deflater#BEST_SPEED}, higher levels cost more time for little gain on token caches.
+         *
+         * @param cacheCompressionLevel Deflate compression level, 0-9
+         * @return The augmented builder.
+         */
+        public Builder setCacheCompressionLevel(int cacheCompressionLevel) {
+            if (cacheCompressionLevel < Deflater.NO_COMPRESSION || cacheCompressionLevel > Deflater.BEST_COMPRESSION) {
+                throw new IllegalArgumentException("cacheCompressionLevel must be between 0 and 9");
+            }
+            this.cacheCompressionLevel = cacheCompressionLevel;
+
+            return this;
+        }
+
+        /**
+         * Augments this builder with Linux KeyRing binary secret setting.
+         * If enabled, the cache is stored in KeyRing as binary secret value
+         * instead of Base64 encoded password, which is 33% smaller and takes less to marshal over D-Bus.
+         * Cache stored as Base64 encoded password is still read, but processes which do not enable
+         * the setting do not see the cache stored as binary secret, so it must be enabled for all of them.
+         * Default value is false.
+         *
+         * @param keyringBinarySecretEnabled boolean value
+         * @return The augmented builder.
+         */
+        public Builder setLinuxKeyringBinarySecretEnabled(boolean keyringBinarySecretEnabled) {
+            this.keyringBinarySecretEnabled = keyringBinarySecretEnabled;
+
+            return this;
+        }
+
         /**
          * Construct an immutable instance of {@link com.microsoft.aad.msal4jextensions.PersistenceSettings}.
          *
@@ -331,7 +899,25 @@ public class PersistenceSettings {
                     keyringAttributeValue2,
                     linuxUseUnprotectedFileAsCacheStorage,
                     lockRetryDelayMilliseconds,
-                    lockRetryNumber);
+                    lockRetryNumber,
+                    lockRetryPolicyFactory,
+                    sharedReadLock,
+                    lockBlockingWait,
+                    lockFilePersistent,
+                    statisticsMBeanEnabled,
+                    generationFileEnabled,
+                    cacheFileHeaderEnabled,
+                    cacheDirectoryWatchEnabled,
+                    prefetchEnabled,
+                    prefetchExecutor,
+                    prefetchMaxStalenessMillis,
+                    writeBehindEnabled,
+                    writeBehindWindowMillis,
+                    journalEnabled,
+                    journalCompactionThresholdBytes,
+                    cacheCompressionEnabled,
+                    cacheCompressionLevel,
+                    keyringBinarySecretEnabled);
         }
     }
 }
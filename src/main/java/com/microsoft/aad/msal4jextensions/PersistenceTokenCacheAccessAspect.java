@@ -3,9 +3,15 @@
 
 package com.microsoft.aad.msal4jextensions;
 
+import com.microsoft.aad.msal4j.ITokenCache;
 import com.microsoft.aad.msal4j.ITokenCacheAccessAspect;
 import com.microsoft.aad.msal4j.ITokenCacheAccessContext;
+import com.microsoft.aad.msal4jextensions.persistence.CacheDataMerger;
+import com.microsoft.aad.msal4jextensions.persistence.CacheFileAccessException;
 import com.microsoft.aad.msal4jextensions.persistence.CacheFileAccessor;
+import com.microsoft.aad.msal4jextensions.persistence.CacheFileHeader;
+import com.microsoft.aad.msal4jextensions.persistence.CacheJournalAccessor;
+import com.microsoft.aad.msal4jextensions.persistence.CompressingCacheAccessor;
 import com.microsoft.aad.msal4jextensions.persistence.ICacheAccessor;
 import com.microsoft.aad.msal4jextensions.persistence.linux.KeyRingAccessor;
 import com.microsoft.aad.msal4jextensions.persistence.mac.KeyChainAccessor;
@@ -14,9 +20,31 @@ import com.sun.jna.Platform;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.management.JMException;
+import javax.management.ObjectName;
 import java.io.File;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Implementation of ITokenCacheAccessAspect which store MSAL token cache
@@ -25,13 +53,101 @@ import java.nio.file.Files;
  * Mac - key chain
  * Linux - key ring
  */
-public class PersistenceTokenCacheAccessAspect implements ITokenCacheAccessAspect {
+public class PersistenceTokenCacheAccessAspect implements ITokenCacheAccessAspect, AutoCloseable {
     private final static Logger LOG = LoggerFactory.getLogger(PersistenceTokenCacheAccessAspect.class);
 
+    private static final int ENCODE_CHUNK_SIZE = 16 * 1024;
+
+    // distinguishes MBeans of aspects which use the same cache file
+    private static final AtomicInteger MBEAN_ID = new AtomicInteger();
+
     private CrossProcessCacheFileLock lock;
-    private Long lastSeenCacheFileModifiedTimestamp;
+    private volatile CacheFileStamp lastSeenCacheFileStamp;
+
+    private volatile CacheDataSnapshot lastSeenCacheData;
+
+    /**
+     * Digest of the cache data last read from or written to the storage,
+     * and the token cache which was loaded from or saved to it
+     */
+    private static class CacheDataSnapshot {
+        final byte[] digest;
+        final WeakReference<ITokenCache> tokenCache;
+
+        CacheDataSnapshot(byte[] digest, ITokenCache tokenCache) {
+            this.digest = digest;
+            this.tokenCache = new WeakReference<>(tokenCache);
+        }
+
+        boolean isLoadedTo(ITokenCache tokenCache, byte[] digest) {
+            return this.tokenCache.get() == tokenCache && Arrays.equals(this.digest, digest);
+        }
+    }
+
+    // generation of the cache last read from or written to the storage
+    private volatile long lastSeenCacheGeneration = -1;
+    private volatile CacheGenerationCounter generationCounter;
+
+    private volatile CacheDirectoryWatcher.Registration cacheDirectoryWatch;
+
+    private static final ExecutorService DEFAULT_PREFETCH_EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "msal4j-cache-prefetch");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Cache data read from the storage in background, ready to be loaded by the next read access
+     */
+    private static class PrefetchedCacheData {
+        private final byte[] data;
+        private final byte[] digest;
+        private final CacheFileStamp cacheFileStamp;
+        private final long cacheGeneration;
+        private final long readNanoTime;
+
+        private PrefetchedCacheData(byte[] data, CacheFileStamp cacheFileStamp, long cacheGeneration) {
+            this.data = data;
+            this.digest = getDigest(data);
+            this.cacheFileStamp = cacheFileStamp;
+            this.cacheGeneration = cacheGeneration;
+            this.readNanoTime = System.nanoTime();
+        }
+    }
+
+    private final AtomicReference<PrefetchedCacheData> prefetchedCacheData = new AtomicReference<>();
+    // incremented on each read of the storage by cache access, so older prefetched data is discarded
+    private final AtomicLong cacheReadSequence = new AtomicLong();
+    private final AtomicBoolean prefetchScheduled = new AtomicBoolean();
+    private volatile CacheDirectoryWatcher.Registration prefetchWatch;
+    private Executor prefetchExecutor;
+    private long prefetchMaxStalenessNanos;
+
+    private CacheWriteBehind writeBehind;
+    // content of the storage last read or written in write-behind mode, base for merge of the deferred changes
+    private volatile byte[] lastSeenCacheContent;
+
+    private static final ExecutorService JOURNAL_COMPACTION_EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "msal4j-cache-journal-compaction");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean journalCompactionScheduled = new AtomicBoolean();
+
+    private final CacheChangeNotifier changeNotifier = new CacheChangeNotifier();
+    // guarded by changeNotifier
+    private CacheDirectoryWatcher.Registration changeListenerWatch;
+    private volatile CacheFileStamp lastNotifiedCacheFileStamp;
+
     private ICacheAccessor cacheAccessor;
 
+    // set if the cache file is framed, its header tells a touched file from a rewritten one
+    private CacheFileAccessor framedCacheFileAccessor;
+    private volatile CacheFileHeader lastSeenCacheFileHeader;
+
+    private CacheAccessStatistics statistics;
+    private ObjectName statisticsMBeanName;
+
     private PersistenceSettings parameters;
 
     private String getCacheLockFilePath() {
@@ -42,6 +158,10 @@ public class PersistenceTokenCacheAccessAspect implements ITokenCacheAccessAspec
         return parameters.getCacheDirectoryPath() + File.separator + parameters.getCacheFileName();
     }
 
+    private String getCacheGenerationFilePath() {
+        return getCacheFilePath() + ".generation";
+    }
+
     private void createCacheFileIfNotExist() throws IOException {
         Files.createDirectories(parameters.getCacheDirectoryPath());
 
@@ -55,22 +175,55 @@ public class PersistenceTokenCacheAccessAspect implements ITokenCacheAccessAspec
 
         createCacheFileIfNotExist();
 
+        if (persistenceSettings.isGenerationFileEnabled()) {
+            generationCounter = new CacheGenerationCounter(Paths.get(getCacheGenerationFilePath()));
+        } else if (persistenceSettings.isCacheDirectoryWatchEnabled()) {
+            try {
+                cacheDirectoryWatch = CacheDirectoryWatcher.register(Paths.get(getCacheFilePath()));
+            } catch (IOException ex) {
+                LOG.error("Failed to watch cache directory, falling back to cache file checks, " + ex.getMessage());
+            }
+        }
+
+        if (persistenceSettings.isWriteBehindEnabled()) {
+            writeBehind = new CacheWriteBehind(persistenceSettings.getWriteBehindWindowMillis(), this::writeCacheBehind);
+        }
+
+        if (persistenceSettings.isPrefetchEnabled()) {
+            prefetchExecutor = persistenceSettings.getPrefetchExecutor() != null ?
+                    persistenceSettings.getPrefetchExecutor() : DEFAULT_PREFETCH_EXECUTOR;
+            prefetchMaxStalenessNanos =
+                    TimeUnit.MILLISECONDS.toNanos(persistenceSettings.getPrefetchMaxStalenessMillis());
+            try {
+                prefetchWatch = CacheDirectoryWatcher.register(Paths.get(getCacheFilePath()), this::schedulePrefetch);
+            } catch (IOException ex) {
+                LOG.error("Failed to watch cache directory, cache will not be prefetched, " + ex.getMessage());
+            }
+        }
+
         String cacheFilePath = getCacheFilePath();
 
         lock = new CrossProcessCacheFileLock(getCacheLockFilePath(),
-                persistenceSettings.getLockRetryDelayMilliseconds(),
-                persistenceSettings.getLockRetryNumber());
+                persistenceSettings.getLockRetryPolicy(),
+                persistenceSettings.isSharedReadLock(),
+                persistenceSettings.isLockBlockingWait(),
+                persistenceSettings.isLockFilePersistent());
+
+        statistics = new CacheAccessStatistics(cacheFilePath, lock);
+        if (persistenceSettings.isStatisticsMBeanEnabled()) {
+            registerStatisticsMBean();
+        }
 
         if (Platform.isMac()) {
             cacheAccessor = new KeyChainAccessor(
                     cacheFilePath, parameters.getKeychainService(), parameters.getKeychainAccount());
 
         } else if (Platform.isWindows()) {
-            cacheAccessor = new CacheFileAccessor(cacheFilePath);
+            cacheAccessor = createCacheFileAccessor(cacheFilePath, persistenceSettings);
 
         } else if (Platform.isLinux()) {
             if (parameters.isOnLinuxUseUnprotectedFileAsCacheStorage()) {
-                cacheAccessor = new CacheFileAccessor(cacheFilePath);
+                cacheAccessor = createCacheFileAccessor(cacheFilePath, persistenceSettings);
             } else {
                 cacheAccessor = new KeyRingAccessor(cacheFilePath,
                         parameters.getKeyringCollection(),
@@ -79,7 +232,8 @@ public class PersistenceTokenCacheAccessAspect implements ITokenCacheAccessAspec
                         parameters.getKeyringAttribute1Key(),
                         parameters.getKeyringAttribute1Value(),
                         parameters.getKeyringAttribute2Key(),
-                        parameters.getKeyringAttribute2Value());
+                        parameters.getKeyringAttribute2Value(),
+                        parameters.isKeyringBinarySecretEnabled());
 
                 try{
                     lock.lock();
@@ -90,46 +244,346 @@ public class PersistenceTokenCacheAccessAspect implements ITokenCacheAccessAspec
                 }
             }
         }
+
+        if (persistenceSettings.isCacheFileHeaderEnabled() && cacheAccessor instanceof CacheFileAccessor) {
+            framedCacheFileAccessor = (CacheFileAccessor) cacheAccessor;
+        }
+
+        // journal diffs entries of the cache, so it stores the cache as is
+        if (persistenceSettings.isCacheCompressionEnabled() && !(cacheAccessor instanceof CacheJournalAccessor)) {
+            cacheAccessor = new CompressingCacheAccessor(cacheAccessor, persistenceSettings.getCacheCompressionLevel());
+        }
     }
 
-    private boolean isWriteAccess(ITokenCacheAccessContext iTokenCacheAccessContext) {
-        return iTokenCacheAccessContext.hasCacheChanged();
+    private static ICacheAccessor createCacheFileAccessor(String cacheFilePath, PersistenceSettings persistenceSettings) {
+        if (persistenceSettings.isJournalEnabled()) {
+            return new CacheJournalAccessor(cacheFilePath,
+                    persistenceSettings.isCacheFileHeaderEnabled(),
+                    persistenceSettings.getJournalCompactionThresholdBytes());
+        }
+        return new CacheFileAccessor(cacheFilePath, persistenceSettings.isCacheFileHeaderEnabled());
+    }
+
+    private void scheduleJournalCompaction() {
+        if (!journalCompactionScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            JOURNAL_COMPACTION_EXECUTOR.execute(this::compactJournal);
+        } catch (RejectedExecutionException ex) {
+            journalCompactionScheduled.set(false);
+            LOG.error("Failed to schedule cache journal compaction, " + ex.getMessage());
+        }
     }
 
-    private boolean isReadAccess(ITokenCacheAccessContext iTokenCacheAccessContext) {
-        return !isWriteAccess(iTokenCacheAccessContext);
+    private void compactJournal() {
+        journalCompactionScheduled.set(false);
+        try {
+            lock.lock();
+            try {
+                ((CacheJournalAccessor) cacheAccessor).compact();
+            } finally {
+                lock.unlock();
+            }
+        } catch (IOException | RuntimeException ex) {
+            LOG.error("Failed to compact cache journal, " + ex.getMessage());
+        }
     }
 
-    private void updateLastSeenCacheFileModifiedTimestamp() {
-        lastSeenCacheFileModifiedTimestamp = getCurrentCacheFileModifiedTimestamp();
+    private void registerStatisticsMBean() {
+        try {
+            ObjectName name = new ObjectName("com.microsoft.aad.msal4jextensions:" +
+                    "type=" + PersistenceTokenCacheAccessAspect.class.getSimpleName() +
+                    ",cacheFile=" + ObjectName.quote(statistics.getCacheFilePath()) +
+                    ",id=" + MBEAN_ID.incrementAndGet());
+
+            ManagementFactory.getPlatformMBeanServer().registerMBean(statistics, name);
+            statisticsMBeanName = name;
+        } catch (JMException ex) {
+            LOG.error("Failed to register cache access statistics MBean, " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Unregisters MBean with cache access statistics of this aspect from platform MBean server,
+     * does nothing if the MBean was not registered.
+     */
+    public void unregisterStatisticsMBean() {
+        if (statisticsMBeanName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(statisticsMBeanName);
+        } catch (JMException ex) {
+            LOG.error("Failed to unregister cache access statistics MBean, " + ex.getMessage());
+        }
+        statisticsMBeanName = null;
+    }
+
+    /**
+     * Stops watching the cache directory for changes and prefetching the cache,
+     * after that every cache access checks the cache file.
+     * Watcher thread shared with other aspects is stopped once none of them watches the directory.
+     * Does nothing if the cache directory is not watched.
+     */
+    public void stopCacheDirectoryWatch() {
+        CacheDirectoryWatcher.Registration registration = cacheDirectoryWatch;
+        if (registration != null) {
+            cacheDirectoryWatch = null;
+            registration.close();
+        }
+        registration = prefetchWatch;
+        if (registration != null) {
+            prefetchWatch = null;
+            registration.close();
+            prefetchedCacheData.set(null);
+        }
+    }
+
+    /**
+     * Releases the memory mapping of the cache generation file, after that every cache access checks the cache file.
+     * Does nothing if the generation file is not enabled.
+     */
+    public void closeCacheGenerationFile() {
+        CacheGenerationCounter counter = generationCounter;
+        if (counter != null) {
+            generationCounter = null;
+            counter.close();
+        }
+    }
+
+    private void schedulePrefetch() {
+        CacheFileStamp cacheFileStamp = getCurrentCacheFileStamp();
+        if (cacheFileStamp == null || cacheFileStamp.equals(lastSeenCacheFileStamp)) {
+            return;
+        }
+        if (prefetchScheduled.compareAndSet(false, true)) {
+            try {
+                prefetchExecutor.execute(this::prefetch);
+            } catch (RejectedExecutionException ex) {
+                prefetchScheduled.set(false);
+                LOG.error("Failed to schedule cache prefetch, " + ex.getMessage());
+            }
+        }
+    }
+
+    private void prefetch() {
+        // changes notified from now on schedule another prefetch
+        prefetchScheduled.set(false);
+
+        long readSequence = cacheReadSequence.get();
+        CacheFileStamp cacheFileStamp = getCurrentCacheFileStamp();
+        if (cacheFileStamp == null || cacheFileStamp.equals(lastSeenCacheFileStamp)) {
+            return;
+        }
+
+        byte[] data;
+        long cacheGeneration;
+        long readStartNanoTime;
+        try {
+            lock.readLock();
+            try {
+                cacheGeneration = getCacheGeneration();
+                readStartNanoTime = System.nanoTime();
+                data = cacheAccessor.read();
+            } finally {
+                lock.unlock();
+            }
+        } catch (IOException | RuntimeException ex) {
+            LOG.error("Failed to prefetch cache, " + ex.getMessage());
+            return;
+        }
+        if (data == null) {
+            return;
+        }
+        long readNanoseconds = System.nanoTime() - readStartNanoTime;
+
+        PrefetchedCacheData prefetched = new PrefetchedCacheData(data, cacheFileStamp, cacheGeneration);
+        prefetchedCacheData.set(prefetched);
+
+        // storage was read by cache access meanwhile, prefetched data may be older than already loaded one
+        if (cacheReadSequence.get() != readSequence) {
+            prefetchedCacheData.compareAndSet(prefetched, null);
+        }
+        statistics.recordPrefetch(data.length, readNanoseconds);
+    }
+
+    /**
+     * Loads prefetched cache data, if there is any not older than max staleness
+     *
+     * @return true if prefetched cache data was loaded
+     */
+    private boolean loadPrefetchedCache(ITokenCacheAccessContext iTokenCacheAccessContext) {
+        PrefetchedCacheData prefetched = prefetchedCacheData.getAndSet(null);
+        if (prefetched == null || System.nanoTime() - prefetched.readNanoTime > prefetchMaxStalenessNanos) {
+            return false;
+        }
+        long deserializeStartNanoTime = System.nanoTime();
+        loadCacheData(iTokenCacheAccessContext, prefetched.data, prefetched.digest);
+        statistics.recordPrefetchedReload(System.nanoTime() - deserializeStartNanoTime);
+
+        lastSeenCacheGeneration = prefetched.cacheGeneration;
+        lastSeenCacheFileStamp = prefetched.cacheFileStamp;
+        if (writeBehind != null) {
+            lastSeenCacheContent = prefetched.data;
+        }
+
+        return true;
+    }
+
+    /**
+     * Registers listener notified on a shared daemon thread when the persisted cache is changed
+     * by another process or another aspect. The cache directory is watched while at least one listener
+     * is registered. Listeners can be bridged to reactive streams, e.g. by passing submit method of
+     * {@code java.util.concurrent.SubmissionPublisher} on Java 9+.
+     *
+     * @param listener Listener to register
+     * @throws IOException if the cache directory can not be watched
+     */
+    public void addCacheChangeListener(ICacheChangeListener listener) throws IOException {
+        addCacheChangeListener(listener, CacheChangeNotifier.DEFAULT_EXECUTOR);
+    }
+
+    /**
+     * Registers listener notified on the given executor when the persisted cache is changed
+     * by another process or another aspect.
+     *
+     * @param listener Listener to register
+     * @param executor Executor on which the listener is called
+     * @throws IOException if the cache directory can not be watched
+     * @see #addCacheChangeListener(ICacheChangeListener)
+     */
+    public void addCacheChangeListener(ICacheChangeListener listener, Executor executor) throws IOException {
+        validateNotNull("listener", listener);
+        validateNotNull("executor", executor);
+
+        synchronized (changeNotifier) {
+            if (changeListenerWatch == null) {
+                changeListenerWatch = CacheDirectoryWatcher.register(
+                        Paths.get(getCacheFilePath()), this::onCacheFileChanged);
+            }
+            changeNotifier.addListener(listener, executor);
+        }
+    }
+
+    /**
+     * Unregisters cache change listener, the cache directory is no longer watched
+     * for listeners once the last one is removed.
+     *
+     * @param listener Listener to unregister
+     */
+    public void removeCacheChangeListener(ICacheChangeListener listener) {
+        synchronized (changeNotifier) {
+            if (changeNotifier.removeListener(listener) && !changeNotifier.hasListeners()) {
+                changeListenerWatch.close();
+                changeListenerWatch = null;
+            }
+        }
+    }
+
+    private void onCacheFileChanged() {
+        CacheFileStamp cacheFileStamp = getCurrentCacheFileStamp();
+
+        // changes already loaded or written by this aspect, or already notified are skipped
+        if (cacheFileStamp == null ||
+                cacheFileStamp.equals(lastSeenCacheFileStamp) ||
+                cacheFileStamp.equals(lastNotifiedCacheFileStamp)) {
+            return;
+        }
+        lastNotifiedCacheFileStamp = cacheFileStamp;
+
+        changeNotifier.notifyListeners(new CacheChangeEvent(getCacheFilePath(),
+                getCacheGeneration(),
+                cacheFileStamp.getSize(),
+                cacheFileStamp.getLastModifiedTime()));
+    }
+
+    private static void validateNotNull(String name, Object value) {
+        if (value == null) {
+            throw new IllegalArgumentException(name + " can not be null");
+        }
+    }
+
+    /**
+     * Returns cache read and write statistics of this aspect.
+     * Statistics are collected all the time at low cost,
+     * they are also exposed in platform MBean server if enabled by
+     * {@link PersistenceSettings.Builder#setStatisticsMBeanEnabled(boolean)}.
+     *
+     * @return Cache access statistics
+     */
+    public ICacheAccessStatisticsMXBean getCacheAccessStatistics() {
+        return statistics;
+    }
+
+    private boolean isWriteAccess(ITokenCacheAccessContext iTokenCacheAccessContext) {
+        return iTokenCacheAccessContext.hasCacheChanged();
+    }
+
+    private CacheFileStamp getCurrentCacheFileStamp() {
+        return CacheFileStamp.read(Paths.get(getCacheFilePath()));
     }
 
     public Long getCurrentCacheFileModifiedTimestamp() {
         return new File(getCacheFilePath()).lastModified();
     }
 
+    /**
+     * Returns contention statistics of cross process cache lock.
+     * Statistics are collected all the time at low cost, this method only sums them up.
+     *
+     * @return Snapshot of lock statistics
+     */
+    public LockStatistics getLockStatistics() {
+        return lock.getStatistics();
+    }
+
+    /**
+     * Reloads the cache if it was changed by other process or thread.
+     * Reloaded data is not deserialized if it is identical to the data last loaded to or saved from the token cache.
+     * If prefetch is enabled, read access loads the cache prefetched in background instead of reading the storage.
+     * For write access acquires the lock, which is held until {@link #afterCacheAccess} is called,
+     * unless write-behind is enabled, in which case the cache is not reloaded while its changes are pending.
+     * Lock is reentrant, so nested cache access on the same thread reuses already held lock.
+     */
     @Override
     public void beforeCacheAccess(ITokenCacheAccessContext iTokenCacheAccessContext) {
         try {
-            if (isWriteAccess(iTokenCacheAccessContext)) {
+            if (isWriteAccess(iTokenCacheAccessContext) && writeBehind == null) {
                 lock.lock();
+                try {
+                    readCache(iTokenCacheAccessContext);
+                } catch (RuntimeException ex) {
+                    // afterCacheAccess is not called if beforeCacheAccess fails
+                    lock.unlock();
+                    throw ex;
+                }
             } else {
-                Long currentCacheFileModifiedTimestamp = getCurrentCacheFileModifiedTimestamp();
-                if (currentCacheFileModifiedTimestamp != null &&
-                        currentCacheFileModifiedTimestamp.equals(lastSeenCacheFileModifiedTimestamp)) {
+                if (isCacheUnchanged()) {
+                    statistics.recordSkippedReload(iTokenCacheAccessContext.clientId());
                     return;
-                } else {
-                    lock.lock();
+                }
+                if (writeBehind == null) {
+                    reloadCache(iTokenCacheAccessContext);
+                } else if (!writeBehind.runIfNotPending(() -> reloadCache(iTokenCacheAccessContext))) {
+                    // reload would discard changes of the token cache which are not written yet
+                    statistics.recordSkippedReload(iTokenCacheAccessContext.clientId());
                 }
             }
-            byte[] data = cacheAccessor.read();
-            if (data != null) {
-                iTokenCacheAccessContext.tokenCache().deserialize(new String(data, StandardCharset.UTF_8));
-            }
-
-            updateLastSeenCacheFileModifiedTimestamp();
+        } catch (IOException ex) {
+            LOG.error(ex.getMessage());
+        }
+    }
 
-            if (isReadAccess(iTokenCacheAccessContext)) {
+    private void reloadCache(ITokenCacheAccessContext iTokenCacheAccessContext) {
+        if (loadPrefetchedCache(iTokenCacheAccessContext)) {
+            return;
+        }
+        try {
+            lock.readLock();
+            try {
+                readCache(iTokenCacheAccessContext);
+            } finally {
                 lock.unlock();
             }
         } catch (IOException ex) {
@@ -137,15 +591,185 @@ public class PersistenceTokenCacheAccessAspect implements ITokenCacheAccessAspec
         }
     }
 
+    private boolean isCacheUnchanged() {
+        // plain memory read, the lock is taken only to reload the changed cache
+        long cacheGeneration = getCacheGeneration();
+        if (cacheGeneration >= 0) {
+            return cacheGeneration == lastSeenCacheGeneration;
+        }
+        CacheDirectoryWatcher.Registration registration = cacheDirectoryWatch;
+        if (registration != null) {
+            return !registration.isChanged();
+        }
+        CacheFileStamp currentCacheFileStamp = getCurrentCacheFileStamp();
+        if (currentCacheFileStamp == null) {
+            return false;
+        }
+        if (currentCacheFileStamp.equals(lastSeenCacheFileStamp)) {
+            return true;
+        }
+        return isCacheFileHeaderUnchanged(currentCacheFileStamp);
+    }
+
+    /**
+     * Reads only the header of the framed cache file, whose stamp changed, so that a file which was touched
+     * but not rewritten is not reloaded. Generation and payload checksum of the header are compared,
+     * and the header is read after the stamp, so a later change changes the stamp again
+     */
+    private boolean isCacheFileHeaderUnchanged(CacheFileStamp currentCacheFileStamp) {
+        CacheFileHeader cacheFileHeader = lastSeenCacheFileHeader;
+        if (framedCacheFileAccessor == null || cacheFileHeader == null) {
+            return false;
+        }
+        CacheFileHeader header;
+        try {
+            header = framedCacheFileAccessor.readHeader();
+        } catch (CacheFileAccessException ex) {
+            LOG.warn(ex.getMessage());
+            return false;
+        }
+        if (!cacheFileHeader.equals(header)) {
+            return false;
+        }
+        lastSeenCacheFileStamp = currentCacheFileStamp;
+        return true;
+    }
+
+    private CacheFileHeader getCacheFileHeader() {
+        return framedCacheFileAccessor != null ? framedCacheFileAccessor.getLastHeader() : null;
+    }
+
+    /**
+     * @return Current cache generation, or -1 if the generation file is not used or is closed
+     */
+    private long getCacheGeneration() {
+        CacheGenerationCounter counter = generationCounter;
+
+        return counter != null ? counter.get() : -1;
+    }
+
+    private static byte[] getDigest(byte[] data) {
+        return createMessageDigest().digest(data);
+    }
+
+    private static MessageDigest createMessageDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            // every Java platform implementation is required to support SHA-256
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private interface IChunkConsumer<E extends Exception> {
+        void accept(byte[] chunk, int offset, int length) throws E;
+    }
+
+    /**
+     * Encodes the string to UTF-8 chunk by chunk through reused buffers,
+     * never holding more than one chunk of encoded data
+     *
+     * @return Length of encoded data in bytes
+     */
+    private static <E extends Exception> int encodeUtf8(String data, IChunkConsumer<E> consumer) throws E {
+        // unpaired surrogates are replaced the same way String.getBytes does
+        CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        char[] chars = new char[ENCODE_CHUNK_SIZE];
+        byte[] bytes = new byte[(int) (ENCODE_CHUNK_SIZE * encoder.maxBytesPerChar())];
+
+        int length = 0;
+        int start = 0;
+        while (start < data.length()) {
+            int end = Math.min(start + ENCODE_CHUNK_SIZE, data.length());
+            if (end < data.length() && Character.isHighSurrogate(data.charAt(end - 1))) {
+                // surrogate pair is encoded as a whole
+                end--;
+            }
+            data.getChars(start, end, chars, 0);
+
+            ByteBuffer byteBuffer = ByteBuffer.wrap(bytes);
+            encoder.reset();
+            encoder.encode(CharBuffer.wrap(chars, 0, end - start), byteBuffer, true);
+            encoder.flush(byteBuffer);
+
+            consumer.accept(bytes, 0, byteBuffer.position());
+            length += byteBuffer.position();
+            start = end;
+        }
+        return length;
+    }
+
+    private void readCache(ITokenCacheAccessContext iTokenCacheAccessContext) {
+        String cacheFilePath = getCacheFilePath();
+
+        cacheReadSequence.incrementAndGet();
+        prefetchedCacheData.set(null);
+
+        // taken before the read, so a change made right after the read is not missed
+        long cacheGeneration = getCacheGeneration();
+        CacheDirectoryWatcher.Registration registration = cacheDirectoryWatch;
+        if (registration != null) {
+            registration.resetChanged();
+        }
+        CacheFileStamp cacheFileStamp = getCurrentCacheFileStamp();
+
+        long readStartNanoTime = System.nanoTime();
+        CacheEvents.IAccessEvent readEvent = CacheEvents.beginRead();
+        byte[] data = cacheAccessor.read();
+        readEvent.complete(cacheFilePath, data == null ? 0 : data.length);
+
+        long deserializeStartNanoTime = System.nanoTime();
+        loadCacheData(iTokenCacheAccessContext, data, data == null ? null : getDigest(data));
+        statistics.recordRead(iTokenCacheAccessContext.clientId(),
+                data == null ? 0 : data.length,
+                deserializeStartNanoTime - readStartNanoTime,
+                System.nanoTime() - deserializeStartNanoTime);
+
+        lastSeenCacheGeneration = cacheGeneration;
+        lastSeenCacheFileHeader = getCacheFileHeader();
+        lastSeenCacheFileStamp = cacheFileStamp;
+        if (writeBehind != null) {
+            lastSeenCacheContent = data;
+        }
+    }
+
+    private void loadCacheData(ITokenCacheAccessContext iTokenCacheAccessContext, byte[] data, byte[] digest) {
+        ITokenCache tokenCache = iTokenCacheAccessContext.tokenCache();
+
+        if (data != null) {
+            // the file could be touched without changing its content
+            CacheDataSnapshot snapshot = lastSeenCacheData;
+            if (snapshot != null && snapshot.isLoadedTo(tokenCache, digest)) {
+                statistics.recordSkippedDeserialize(iTokenCacheAccessContext.clientId());
+            } else {
+                CacheEvents.IAccessEvent deserializeEvent = CacheEvents.beginDeserialize();
+                tokenCache.deserialize(new String(data, StandardCharset.UTF_8));
+                deserializeEvent.complete(getCacheFilePath(), data.length);
+            }
+        }
+        lastSeenCacheData = new CacheDataSnapshot(digest, tokenCache);
+    }
+
+    /**
+     * Writes the cache to the storage and releases the lock acquired by {@link #beforeCacheAccess}.
+     * The write is skipped if the serialized cache is identical to the content of the storage,
+     * which was loaded under the same lock.
+     * If write-behind is enabled, the write is scheduled on the writer thread and coalesced with other writes.
+     */
     @Override
     public void afterCacheAccess(ITokenCacheAccessContext iTokenCacheAccessContext) {
-        try {
-            if (isWriteAccess(iTokenCacheAccessContext)) {
-                cacheAccessor.write(iTokenCacheAccessContext.tokenCache().serialize().getBytes(StandardCharset.UTF_8));
-                updateLastSeenCacheFileModifiedTimestamp();
+        if (isWriteAccess(iTokenCacheAccessContext)) {
+            if (writeBehind != null) {
+                if (writeBehind.schedule(iTokenCacheAccessContext.tokenCache(), iTokenCacheAccessContext.clientId())) {
+                    statistics.recordCoalescedWrite();
+                }
+                return;
             }
-        } finally {
-            if(lock != null) {
+            try {
+                writeCache(iTokenCacheAccessContext.tokenCache(), iTokenCacheAccessContext.clientId());
+            } finally {
                 try {
                     lock.unlock();
                 } catch (IOException e) {
@@ -154,4 +778,157 @@ public class PersistenceTokenCacheAccessAspect implements ITokenCacheAccessAspec
             }
         }
     }
+
+    private void writeCache(ITokenCache tokenCache, String clientId) {
+        String cacheFilePath = getCacheFilePath();
+
+        long serializeStartNanoTime = System.nanoTime();
+        CacheEvents.IAccessEvent serializeEvent = CacheEvents.beginSerialize();
+        String serializedCache = tokenCache.serialize();
+
+        // the cache file, or the compressor, is written from the serialized string in chunks,
+        // so that a large cache is not copied into a single byte array
+        byte[] data = null;
+        int dataLength;
+        byte[] digest;
+        if (cacheAccessor instanceof CacheFileAccessor || cacheAccessor instanceof CompressingCacheAccessor) {
+            MessageDigest messageDigest = createMessageDigest();
+            dataLength = encodeUtf8(serializedCache, messageDigest::update);
+            digest = messageDigest.digest();
+        } else {
+            data = serializedCache.getBytes(StandardCharset.UTF_8);
+            dataLength = data.length;
+            digest = getDigest(data);
+        }
+        serializeEvent.complete(cacheFilePath, dataLength);
+
+        CacheDataSnapshot snapshot = lastSeenCacheData;
+        if (snapshot != null && Arrays.equals(digest, snapshot.digest)) {
+            statistics.recordSkippedWrite(clientId, System.nanoTime() - serializeStartNanoTime);
+            return;
+        }
+
+        long writeStartNanoTime = System.nanoTime();
+        CacheEvents.IAccessEvent writeEvent = CacheEvents.beginWrite();
+        if (data != null) {
+            cacheAccessor.write(data);
+        } else {
+            cacheAccessor.write(stream -> encodeUtf8(serializedCache, stream::write));
+        }
+        writeEvent.complete(cacheFilePath, dataLength);
+        statistics.recordWrite(clientId,
+                dataLength,
+                writeStartNanoTime - serializeStartNanoTime,
+                System.nanoTime() - writeStartNanoTime);
+
+        lastSeenCacheData = new CacheDataSnapshot(digest, tokenCache);
+        CacheGenerationCounter counter = generationCounter;
+        if (counter != null) {
+            lastSeenCacheGeneration = counter.increment();
+        }
+        lastSeenCacheFileHeader = getCacheFileHeader();
+        lastSeenCacheFileStamp = getCurrentCacheFileStamp();
+        if (writeBehind != null) {
+            lastSeenCacheContent = data != null ? data : serializedCache.getBytes(StandardCharset.UTF_8);
+        }
+
+        if (cacheAccessor instanceof CacheJournalAccessor &&
+                ((CacheJournalAccessor) cacheAccessor).isCompactionNeeded()) {
+            scheduleJournalCompaction();
+        }
+    }
+
+    /**
+     * Writes the cache coalesced by write-behind under the lock, on the writer thread or in {@link #flush()}.
+     * If the storage was changed since it was last read or written, the deferred changes are merged into it
+     */
+    private void writeCacheBehind(ITokenCache tokenCache, String clientId) {
+        lock.lock();
+        try {
+            if (isCacheUnchanged()) {
+                writeCache(tokenCache, clientId);
+            } else {
+                writeMergedCache(tokenCache, clientId);
+            }
+        } finally {
+            try {
+                lock.unlock();
+            } catch (IOException e) {
+                LOG.error(e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Applies entries changed in the token cache since the storage was last read or written onto the current
+     * content of the storage, so that changes made meanwhile by other processes are kept.
+     * The token cache is not replaced here, as the application may change it concurrently; the last seen state
+     * is kept, so the merged cache is loaded on the next access without pending changes,
+     * and a following deferred write is merged again.
+     */
+    private void writeMergedCache(ITokenCache tokenCache, String clientId) {
+        String cacheFilePath = getCacheFilePath();
+
+        byte[] otherData = cacheAccessor.read();
+        byte[] baseData = lastSeenCacheContent;
+        if (Arrays.equals(otherData, baseData)) {
+            // storage was touched but not changed
+            writeCache(tokenCache, clientId);
+            return;
+        }
+
+        long serializeStartNanoTime = System.nanoTime();
+        byte[] data = tokenCache.serialize().getBytes(StandardCharset.UTF_8);
+        byte[] mergedData = CacheDataMerger.merge(baseData, data, otherData);
+        if (mergedData == null) {
+            LOG.warn("Cache was changed by other process and can not be merged with pending changes, " +
+                    "the changes of other process are overwritten");
+            writeCache(tokenCache, clientId);
+            return;
+        }
+
+        long writeStartNanoTime = System.nanoTime();
+        CacheEvents.IAccessEvent writeEvent = CacheEvents.beginWrite();
+        cacheAccessor.write(mergedData);
+        writeEvent.complete(cacheFilePath, mergedData.length);
+        statistics.recordWrite(clientId,
+                mergedData.length,
+                writeStartNanoTime - serializeStartNanoTime,
+                System.nanoTime() - writeStartNanoTime);
+
+        CacheGenerationCounter counter = generationCounter;
+        if (counter != null) {
+            counter.increment();
+        }
+    }
+
+    /**
+     * Releases resources of the aspect: writes pending write-behind changes, stops watching the cache directory,
+     * closes the generation file, unregisters the statistics MBean and releases the lock file state
+     * shared by the aspects of this process. The aspect can not be used after it is closed.
+     */
+    @Override
+    public void close() {
+        flush();
+        stopCacheDirectoryWatch();
+        closeCacheGenerationFile();
+        unregisterStatisticsMBean();
+        synchronized (changeNotifier) {
+            if (changeListenerWatch != null) {
+                changeListenerWatch.close();
+                changeListenerWatch = null;
+            }
+        }
+        lock.close();
+    }
+
+    /**
+     * Writes cache changes pending in write-behind mode to the storage on the calling thread.
+     * Does nothing if write-behind is not enabled or no changes are pending.
+     */
+    public void flush() {
+        if (writeBehind != null) {
+            writeBehind.flush();
+        }
+    }
 }
@@ -0,0 +1,43 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.aad.msal4jextensions.persistence;
+
+import java.util.Map;
+
+/**
+ * Merges serialized caches entry by entry, in the same way the journal of {@link CacheJournalAccessor}
+ * applies changes. Used to write a cache whose changes were deferred without overwriting
+ * changes made meanwhile by other processes.
+ */
+public final class CacheDataMerger {
+
+    private CacheDataMerger() {
+    }
+
+    /**
+     * Applies entries added, changed or removed between base data and data onto other data.
+     * Entries changed only in other data are kept, entries changed in both take the value of data.
+     *
+     * @param baseData  Cache the changes were made from, null if there was no cache
+     * @param data      Cache with the changes
+     * @param otherData Cache changed by other process, null if there is no cache
+     * @return Merged cache, or null if the changes are not limited to entries of sections
+     * or any of the caches is not a JSON object
+     */
+    public static byte[] merge(byte[] baseData, byte[] data, byte[] otherData) {
+        Map<String, Object> baseSections = CacheJournalAccessor.parseSections(baseData);
+        Map<String, Object> sections = CacheJournalAccessor.parseSections(data);
+        Map<String, Object> otherSections = CacheJournalAccessor.parseSections(otherData);
+        if (baseSections == null || sections == null || otherSections == null) {
+            return null;
+        }
+        Map<String, Object> delta = CacheJournalAccessor.diff(baseSections, sections);
+        if (delta == null) {
+            return null;
+        }
+        CacheJournalAccessor.apply(otherSections, delta);
+
+        return CacheJournalAccessor.serializeSections(otherSections);
+    }
+}
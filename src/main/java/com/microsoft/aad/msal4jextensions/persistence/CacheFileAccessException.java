@@ -8,6 +8,10 @@ package com.microsoft.aad.msal4jextensions.persistence;
  */
 public class CacheFileAccessException extends RuntimeException {
 
+    CacheFileAccessException(String message) {
+        super(message);
+    }
+
     CacheFileAccessException(String message, Throwable throwable) {
         super(message, throwable);
     }
@@ -8,13 +8,23 @@ import com.sun.jna.platform.win32.Crypt32Util;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.nio.file.attribute.FileTime;
+import java.util.zip.CRC32;
 
 /**
  * Implementation of CacheAccessor based on File persistence
@@ -22,11 +32,27 @@ import java.nio.file.attribute.FileTime;
 public class CacheFileAccessor implements ICacheAccessor {
     private final static Logger LOG = LoggerFactory.getLogger(CacheFileAccessor.class);
 
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+
     private String cacheFilePath;
     private File cacheFile;
+    private boolean framed;
+
+    // header of the framed file last read or written by this accessor, null if not known
+    private volatile CacheFileHeader lastHeader;
 
     public CacheFileAccessor(String cacheFilePath) {
+        this(cacheFilePath, false);
+    }
+
+    /**
+     * @param cacheFilePath Path of the cache file
+     * @param framed        If true, payload is written preceded by {@link CacheFileHeader}.
+     *                      Both framed and unframed files are read regardless of this setting
+     */
+    public CacheFileAccessor(String cacheFilePath, boolean framed) {
         this.cacheFilePath = cacheFilePath;
+        this.framed = framed;
 
         cacheFile = new File(cacheFilePath);
     }
@@ -42,6 +68,12 @@ public class CacheFileAccessor implements ICacheAccessor {
                 throw new CacheFileAccessException("Failed to read Cache File", e);
             }
 
+            CacheFileHeader header = CacheFileHeader.parse(ByteBuffer.wrap(data));
+            data = unframe(header, data);
+            if (header != null && data != null) {
+                lastHeader = header;
+            }
+
             if (data != null && data.length > 0 && Platform.isWindows()) {
                 data = Crypt32Util.cryptUnprotectData(data);
             }
@@ -50,11 +82,146 @@ public class CacheFileAccessor implements ICacheAccessor {
         return data;
     }
 
+    /**
+     * @return Header of the framed cache file last read or written by this accessor,
+     * or null if no framed file was read or written yet
+     */
+    public CacheFileHeader getLastHeader() {
+        return lastHeader;
+    }
+
+    /**
+     * Reads only the header of the cache file, without reading the payload
+     *
+     * @return Header of the cache file, or null if the file does not exist or is not framed
+     */
+    public CacheFileHeader readHeader() {
+        try (FileChannel channel = FileChannel.open(cacheFile.toPath(), StandardOpenOption.READ)) {
+            return readHeader(channel);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            throw new CacheFileAccessException("Failed to read Cache File header", e);
+        }
+    }
+
+    private static CacheFileHeader readHeader(FileChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(CacheFileHeader.SIZE);
+
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, buffer.position()) < 0) {
+                return null;
+            }
+        }
+        buffer.flip();
+
+        return CacheFileHeader.parse(buffer);
+    }
+
+    /**
+     * Streams unframed cache file directly from disk. Framed files, whose checksum has to be verified
+     * before the payload is used, and encrypted files on Windows are read into memory by {@link #read()}
+     */
+    @Override
+    public InputStream openInputStream() {
+        if (Platform.isWindows()) {
+            return ICacheAccessor.super.openInputStream();
+        }
+
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(cacheFile.toPath(), StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            throw new CacheFileAccessException("Failed to read Cache File", e);
+        }
+
+        boolean framedFile = true;
+        try {
+            // header is checked on the opened channel, so the file can not be replaced in between
+            framedFile = readHeader(channel) != null;
+        } catch (IOException e) {
+            throw new CacheFileAccessException("Failed to read Cache File header", e);
+        } finally {
+            if (framedFile) {
+                close(channel);
+            }
+        }
+
+        if (!framedFile) {
+            return Channels.newInputStream(channel);
+        }
+        return ICacheAccessor.super.openInputStream();
+    }
+
+    /**
+     * @return Payload of framed data, data itself if it is not framed, or null if framed data is corrupted
+     */
+    private static byte[] unframe(CacheFileHeader header, byte[] data) {
+        if (header == null) {
+            return data;
+        }
+        int payloadLength = data.length - CacheFileHeader.SIZE;
+
+        if (!header.isValidPayload(data, CacheFileHeader.SIZE, payloadLength)) {
+            // torn or corrupted file is treated as missing, so the next write replaces it
+            LOG.error("Cache File is corrupted, expected payload of " + header.getPayloadLength() +
+                    " bytes with checksum " + Integer.toHexString(header.getChecksum()) +
+                    ", found " + payloadLength + " bytes");
+            return null;
+        }
+        byte[] payload = new byte[payloadLength];
+        System.arraycopy(data, CacheFileHeader.SIZE, payload, 0, payloadLength);
+
+        return payload;
+    }
+
+    private static void close(FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            LOG.warn("Failed to close Cache File, " + e.getMessage());
+        }
+    }
+
+    /**
+     * Generation is carried forward from the last read or write, which precedes the write under the cache lock.
+     * The header is read only if this accessor has not seen a framed file yet
+     */
+    private long nextGeneration() {
+        CacheFileHeader previousHeader = lastHeader;
+        if (previousHeader == null) {
+            try {
+                previousHeader = readHeader();
+            } catch (CacheFileAccessException e) {
+                // file is overwritten anyway, generation restarts
+                LOG.warn("Failed to read Cache File header, " + e.getMessage());
+            }
+        }
+        return previousHeader != null ? previousHeader.getGeneration() + 1 : 1;
+    }
+
+    private static byte[] frame(CacheFileHeader header, byte[] payload) {
+        ByteBuffer buffer = ByteBuffer.allocate(CacheFileHeader.SIZE + payload.length);
+        header.writeTo(buffer);
+        buffer.put(payload);
+
+        return buffer.array();
+    }
+
     @Override
     public void write(byte[] data) {
         if (Platform.isWindows()) {
             data = Crypt32Util.cryptProtectData(data);
+        }
+        CacheFileHeader header = null;
+        if (framed) {
+            header = CacheFileHeader.create(nextGeneration(), data);
+            data = frame(header, data);
+        }
 
+        if (Platform.isWindows()) {
             try (FileOutputStream stream = new FileOutputStream(cacheFile)) {
                 stream.write(data);
             }
@@ -65,6 +232,9 @@ public class CacheFileAccessor implements ICacheAccessor {
         else {
             writeAtomic(data);
         }
+        if (header != null) {
+            lastHeader = header;
+        }
     }
 
     private void writeAtomic(byte[] data) {
@@ -90,6 +260,95 @@ public class CacheFileAccessor implements ICacheAccessor {
         }
     }
 
+    /**
+     * Streams cache data into a temporary file, which atomically replaces the cache file once the writer completes.
+     * If framed, header is written in place of reserved bytes after the payload checksum is known.
+     * On Windows, where data is encrypted as a whole, data is collected and written by {@link #write(byte[])}
+     */
+    @Override
+    public void write(ICacheDataWriter dataWriter) {
+        if (Platform.isWindows()) {
+            ICacheAccessor.super.write(dataWriter);
+            return;
+        }
+
+        CacheFileHeader header = null;
+        File tempFile = null;
+        try {
+            try {
+                tempFile = File.createTempFile("JavaMsalExtTemp", ".tmp", cacheFile.getParentFile());
+
+                try (FileChannel channel = FileChannel.open(tempFile.toPath(), StandardOpenOption.WRITE)) {
+                    channel.position(framed ? CacheFileHeader.SIZE : 0);
+
+                    PayloadOutputStream stream = new PayloadOutputStream(
+                            new BufferedOutputStream(Channels.newOutputStream(channel), STREAM_BUFFER_SIZE));
+                    dataWriter.writeTo(stream);
+                    stream.flush();
+
+                    if (framed) {
+                        ByteBuffer buffer = ByteBuffer.allocate(CacheFileHeader.SIZE);
+                        header = new CacheFileHeader(CacheFileHeader.FORMAT_VERSION, nextGeneration(),
+                                stream.length, (int) stream.crc.getValue());
+                        header.writeTo(buffer);
+                        buffer.flip();
+                        while (buffer.hasRemaining()) {
+                            channel.write(buffer, buffer.position());
+                        }
+                    }
+                }
+
+                Files.move(tempFile.toPath(), cacheFile.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                if (tempFile != null) {
+                    Files.deleteIfExists(tempFile.toPath());
+                }
+            }
+        }
+        catch (IOException e) {
+            throw new CacheFileAccessException("Failed to write to Cache File", e);
+        }
+        if (header != null) {
+            lastHeader = header;
+        }
+    }
+
+    /**
+     * Tracks length and checksum of the written payload, and keeps the writer from closing the file
+     */
+    private class PayloadOutputStream extends FilterOutputStream {
+        private final CRC32 crc = new CRC32();
+        private long length;
+
+        PayloadOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            if (framed) {
+                crc.update(b);
+            }
+            length++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            if (framed) {
+                crc.update(b, off, len);
+            }
+            length += len;
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+
     @Override
     public void delete() {
         try {
@@ -0,0 +1,154 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.aad.msal4jextensions.persistence;
+
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+
+/**
+ * Header of framed cache file, which precedes the payload of the cache.
+ * <p>
+ * Layout, big-endian, {@link #SIZE} bytes:
+ * <pre>
+ * magic (4) | format version (2) | reserved (2) | generation (8) | payload length (8) | payload CRC32 (4) | reserved (4)
+ * </pre>
+ * First byte of the magic is not ASCII, so framed file can not be mistaken for unframed JSON payload
+ * or for DPAPI protected payload.
+ */
+public final class CacheFileHeader {
+
+    /**
+     * Size of the header in bytes
+     */
+    public static final int SIZE = 32;
+
+    static final int MAGIC = 0x894D5345;
+
+    static final short FORMAT_VERSION = 1;
+
+    private final short formatVersion;
+    private final long generation;
+    private final long payloadLength;
+    private final int checksum;
+
+    CacheFileHeader(short formatVersion, long generation, long payloadLength, int checksum) {
+        this.formatVersion = formatVersion;
+        this.generation = generation;
+        this.payloadLength = payloadLength;
+        this.checksum = checksum;
+    }
+
+    static CacheFileHeader create(long generation, byte[] payload) {
+        return new CacheFileHeader(FORMAT_VERSION, generation, payload.length, checksum(payload));
+    }
+
+    /**
+     * @return Parsed header, or null if the buffer does not start with framed cache file header
+     */
+    static CacheFileHeader parse(ByteBuffer buffer) {
+        if (buffer.remaining() < SIZE || buffer.getInt(buffer.position()) != MAGIC) {
+            return null;
+        }
+        int position = buffer.position();
+
+        short formatVersion = buffer.getShort(position + 4);
+        if (formatVersion != FORMAT_VERSION) {
+            throw new CacheFileAccessException("Unsupported Cache File format version " + formatVersion);
+        }
+
+        return new CacheFileHeader(formatVersion,
+                buffer.getLong(position + 8),
+                buffer.getLong(position + 16),
+                buffer.getInt(position + 24));
+    }
+
+    void writeTo(ByteBuffer buffer) {
+        buffer.putInt(MAGIC);
+        buffer.putShort(formatVersion);
+        buffer.putShort((short) 0);
+        buffer.putLong(generation);
+        buffer.putLong(payloadLength);
+        buffer.putInt(checksum);
+        buffer.putInt(0);
+    }
+
+    boolean isValidPayload(byte[] payload, int offset, int length) {
+        return length == payloadLength && checksum(payload, offset, length) == checksum;
+    }
+
+    static int checksum(byte[] payload) {
+        return checksum(payload, 0, payload.length);
+    }
+
+    static int checksum(byte[] payload, int offset, int length) {
+        // CRC32C would be cheaper, but it is not available on Java 8
+        CRC32 crc = new CRC32();
+        crc.update(payload, offset, length);
+
+        return (int) crc.getValue();
+    }
+
+    /**
+     * @return Version of the file format
+     */
+    public short getFormatVersion() {
+        return formatVersion;
+    }
+
+    /**
+     * @return Generation of the cache, incremented by each write
+     */
+    public long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * @return Length of the stored payload in bytes
+     */
+    public long getPayloadLength() {
+        return payloadLength;
+    }
+
+    /**
+     * @return CRC32 of the stored payload
+     */
+    public int getChecksum() {
+        return checksum;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof CacheFileHeader)) {
+            return false;
+        }
+        CacheFileHeader other = (CacheFileHeader) o;
+
+        return formatVersion == other.formatVersion &&
+                generation == other.generation &&
+                payloadLength == other.payloadLength &&
+                checksum == other.checksum;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = Long.hashCode(generation);
+        result = 31 * result + Long.hashCode(payloadLength);
+        result = 31 * result + checksum;
+
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheFileHeader{" +
+                "formatVersion=" + formatVersion +
+                ", generation=" + generation +
+                ", payloadLength=" + payloadLength +
+                ", checksum=" + Integer.toHexString(checksum) +
+                '}';
+    }
+}
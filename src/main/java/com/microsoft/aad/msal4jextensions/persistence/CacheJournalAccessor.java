@@ -0,0 +1,574 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.aad.msal4jextensions.persistence;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import com.sun.jna.Platform;
+import com.sun.jna.platform.win32.Crypt32Util;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * Implementation of CacheAccessor which stores the cache as a base snapshot in the cache file
+ * and appends changes to a journal file next to it, so the storage I/O of a write is proportional
+ * to the size of the change instead of the size of the cache.
+ * <p>
+ * The cache is a JSON object of sections, each mapping keys to entries. A journal record holds
+ * the changed entries, with null for removed entries or sections. Entries are kept and compared
+ * as raw JSON, they are not parsed into objects. Records are framed by their length and CRC32,
+ * so a torn record at the end of the journal, left by a crashed writer, is detected,
+ * ignored by readers and truncated by the next writer. Once the journal is larger than
+ * the compaction threshold, {@link #compact()} folds it back into the snapshot.
+ * <p>
+ * The journal header holds length and CRC32 of the snapshot the journal applies to.
+ * When the snapshot is replaced, by compaction or by a write which is not expressible as a change
+ * of entries, a journal left next to it by a crash or a failed delete does not match the new snapshot,
+ * so it is discarded instead of being replayed on top of it.
+ * <p>
+ * As with other accessors, read and write must be done under the cross process cache lock,
+ * and all processes sharing the cache must use the journal. Threads sharing the read lock may read
+ * concurrently, each read builds its own result and publishes the state of the storage as a whole.
+ */
+public class CacheJournalAccessor implements ICacheAccessor {
+    private final static Logger LOG = LoggerFactory.getLogger(CacheJournalAccessor.class);
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private static final byte[] NULL = "null".getBytes(StandardCharsets.UTF_8);
+
+    static final int JOURNAL_MAGIC = 0x894D534A;
+    static final int JOURNAL_FORMAT_VERSION = 2;
+    static final int JOURNAL_HEADER_SIZE = 16;
+    static final int RECORD_HEADER_SIZE = 8;
+
+    private final CacheFileAccessor snapshotAccessor;
+    private final Path snapshotPath;
+    private final Path journalPath;
+    private final long compactionThresholdBytes;
+
+    // content of the storage as of the last read or write by this accessor
+    private volatile JournalState state = JournalState.EMPTY;
+
+    /**
+     * Immutable state of the storage, replaced as a whole, so concurrent readers do not see a mix of two reads
+     */
+    private static final class JournalState {
+        static final JournalState EMPTY = new JournalState(null, null, 0, null, 0, 0);
+
+        final byte[] data;
+        // parsed from data only when needed
+        final Map<String, Object> sections;
+        final long journalLength;
+        final Object snapshotVersion;
+
+        // length and checksum of the snapshot, written to the header of a new journal
+        final int snapshotLength;
+        final int snapshotChecksum;
+
+        JournalState(byte[] data, Map<String, Object> sections, long journalLength, Object snapshotVersion,
+                     int snapshotLength, int snapshotChecksum) {
+            this.data = data;
+            this.sections = sections;
+            this.journalLength = journalLength;
+            this.snapshotVersion = snapshotVersion;
+            this.snapshotLength = snapshotLength;
+            this.snapshotChecksum = snapshotChecksum;
+        }
+
+        JournalState withContent(byte[] data, Map<String, Object> sections,
+                                 long journalLength, Object snapshotVersion) {
+            return new JournalState(data, sections, journalLength, snapshotVersion, snapshotLength, snapshotChecksum);
+        }
+    }
+
+    /**
+     * @param cacheFilePath            Path of the cache file holding the snapshot, the journal is stored
+     *                                 in the same directory with ".journal" suffix
+     * @param framed                   If true, the snapshot is written preceded by {@link CacheFileHeader}
+     * @param compactionThresholdBytes Size of the journal after which compaction is needed
+     */
+    public CacheJournalAccessor(String cacheFilePath, boolean framed, long compactionThresholdBytes) {
+        snapshotAccessor = new CacheFileAccessor(cacheFilePath, framed);
+        snapshotPath = Paths.get(cacheFilePath);
+        journalPath = Paths.get(cacheFilePath + ".journal");
+        this.compactionThresholdBytes = compactionThresholdBytes;
+    }
+
+    @Override
+    public byte[] read() {
+        return readState().data;
+    }
+
+    private JournalState readState() {
+        Object version = getSnapshotVersion();
+        byte[] snapshot = snapshotAccessor.read();
+
+        byte[] journal;
+        try {
+            journal = Files.readAllBytes(journalPath);
+        } catch (NoSuchFileException e) {
+            journal = new byte[0];
+        } catch (IOException e) {
+            throw new CacheFileAccessException("Failed to read Cache Journal File", e);
+        }
+        int checksum = snapshot == null ? 0 : CacheFileHeader.checksum(snapshot);
+        if (journal.length > 0 && !isValidJournalHeader(journal)) {
+            LOG.warn("Ignoring Cache Journal File without valid header");
+            journal = new byte[0];
+        } else if (journal.length > 0 && (snapshot == null || !isJournalOf(journal, snapshot.length, checksum))) {
+            LOG.warn("Ignoring Cache Journal File left from replaced Cache File");
+            journal = new byte[0];
+        }
+
+        Map<String, Object> replayed = null;
+        int offset = journal.length > 0 ? JOURNAL_HEADER_SIZE : 0;
+        while (offset < journal.length) {
+            byte[] record = readRecord(journal, offset);
+            if (record == null) {
+                LOG.warn("Ignoring torn record at the end of Cache Journal File at offset " + offset);
+                break;
+            }
+            if (replayed == null) {
+                replayed = parseSections(snapshot);
+            }
+            Map<String, Object> delta = parseSections(record);
+            if (replayed == null || delta == null) {
+                throw new CacheFileAccessException("Cache Journal File is not applicable to the Cache File");
+            }
+            apply(replayed, delta);
+            offset += RECORD_HEADER_SIZE + ByteBuffer.wrap(journal).getInt(offset);
+        }
+
+        // snapshot without changes is returned as is
+        JournalState readState = new JournalState(replayed == null ? snapshot : serializeSections(replayed),
+                replayed, offset, version, snapshot == null ? 0 : snapshot.length, checksum);
+        state = readState;
+
+        return readState;
+    }
+
+    @Override
+    public void write(byte[] data) {
+        Map<String, Object> newSections = parseSections(data);
+        if (newSections == null || !Files.exists(snapshotPath)) {
+            writeSnapshot(data, newSections);
+            return;
+        }
+
+        JournalState currentState = refresh();
+        Map<String, Object> delta = currentState.sections != null ? diff(currentState.sections, newSections) : null;
+        if (delta == null) {
+            // not expressible as a change of entries
+            writeSnapshot(data, newSections);
+            return;
+        }
+        if (delta.isEmpty()) {
+            state = currentState.withContent(data, newSections,
+                    currentState.journalLength, currentState.snapshotVersion);
+            return;
+        }
+        long journalLength = appendRecord(serializeSections(delta), currentState);
+
+        // journal is not watched, so the snapshot is touched to signal the change,
+        // with strictly increasing time, as writes can come within one tick of the clock
+        touchSnapshot();
+        state = currentState.withContent(data, newSections, journalLength, getSnapshotVersion());
+    }
+
+    @Override
+    public void delete() {
+        snapshotAccessor.delete();
+        try {
+            Files.deleteIfExists(journalPath);
+        } catch (IOException e) {
+            throw new CacheFileAccessException("Failed to delete Cache Journal File", e);
+        }
+        state = JournalState.EMPTY;
+    }
+
+    /**
+     * @return Size of the journal in bytes, as of the last read or write
+     */
+    public long getJournalLength() {
+        return state.journalLength;
+    }
+
+    /**
+     * @return true if the journal is larger than compaction threshold
+     */
+    public boolean isCompactionNeeded() {
+        return state.journalLength > compactionThresholdBytes;
+    }
+
+    /**
+     * Folds the journal into the snapshot. Must be called under the cross process cache lock.
+     * If the process crashes after the snapshot is written, but before the journal is removed,
+     * the journal does not match the new snapshot and is discarded by the next read.
+     */
+    public void compact() {
+        JournalState readState = readState();
+        if (readState.journalLength == 0) {
+            return;
+        }
+        writeSnapshot(readState.data, readState.sections);
+    }
+
+    private void writeSnapshot(byte[] data, Map<String, Object> newSections) {
+        int checksum = CacheFileHeader.checksum(data);
+        try {
+            // a journal which would still match the new snapshot is removed before the snapshot is replaced,
+            // any other journal is discarded by readers once the new snapshot is in place
+            if (isJournalOf(readJournalHeader(), data.length, checksum)) {
+                Files.deleteIfExists(journalPath);
+            }
+            snapshotAccessor.write(data);
+            Files.deleteIfExists(journalPath);
+        } catch (IOException e) {
+            throw new CacheFileAccessException("Failed to delete Cache Journal File", e);
+        }
+        state = new JournalState(data, newSections, 0, getSnapshotVersion(), data.length, checksum);
+    }
+
+    private byte[] readJournalHeader() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(JOURNAL_HEADER_SIZE);
+
+        try (FileChannel channel = FileChannel.open(journalPath, StandardOpenOption.READ)) {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, buffer.position()) < 0) {
+                    return null;
+                }
+            }
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Reads the storage again if it was changed by another process since the last read or write,
+     * and parses sections of the content, if not parsed yet
+     *
+     * @return Current state of the storage
+     */
+    private JournalState refresh() {
+        JournalState currentState = state;
+        long currentJournalLength;
+        try {
+            currentJournalLength = Files.size(journalPath);
+        } catch (NoSuchFileException e) {
+            currentJournalLength = 0;
+        } catch (IOException e) {
+            throw new CacheFileAccessException("Failed to read Cache Journal File", e);
+        }
+        // also reads again to find valid length of journal with torn tail
+        if (currentState.data == null ||
+                currentJournalLength != currentState.journalLength ||
+                !Objects.equals(currentState.snapshotVersion, getSnapshotVersion())) {
+            currentState = readState();
+        }
+        if (currentState.sections == null) {
+            currentState = currentState.withContent(currentState.data, parseSections(currentState.data),
+                    currentState.journalLength, currentState.snapshotVersion);
+            state = currentState;
+        }
+        return currentState;
+    }
+
+    /**
+     * @return New length of the journal
+     */
+    private long appendRecord(byte[] payload, JournalState currentState) {
+        if (Platform.isWindows()) {
+            payload = Crypt32Util.cryptProtectData(payload);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+
+        boolean newJournal = currentState.journalLength < JOURNAL_HEADER_SIZE;
+        ByteBuffer buffer = ByteBuffer.allocate(
+                (newJournal ? JOURNAL_HEADER_SIZE : 0) + RECORD_HEADER_SIZE + payload.length);
+        if (newJournal) {
+            buffer.putInt(JOURNAL_MAGIC);
+            buffer.putInt(JOURNAL_FORMAT_VERSION);
+            buffer.putInt(currentState.snapshotLength);
+            buffer.putInt(currentState.snapshotChecksum);
+        }
+        buffer.putInt(payload.length);
+        buffer.putInt((int) crc.getValue());
+        buffer.put(payload);
+        buffer.flip();
+
+        try (FileChannel channel = FileChannel.open(journalPath,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            long position = newJournal ? 0 : currentState.journalLength;
+            if (channel.size() > position) {
+                // torn tail of a crashed writer, or a journal without valid header
+                channel.truncate(position);
+            }
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            return position;
+        } catch (IOException e) {
+            throw new CacheFileAccessException("Failed to write to Cache Journal File", e);
+        }
+    }
+
+    private void touchSnapshot() {
+        try {
+            long lastModified = Files.getLastModifiedTime(snapshotPath).toMillis();
+            FileTime fileTime = FileTime.fromMillis(Math.max(System.currentTimeMillis(), lastModified + 1));
+
+            Files.setLastModifiedTime(snapshotPath, fileTime);
+        } catch (IOException e) {
+            throw new CacheFileAccessException("Failed to set lastModified time on Cache File", e);
+        }
+    }
+
+    private Object getSnapshotVersion() {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(snapshotPath, BasicFileAttributes.class);
+
+            // the snapshot is replaced on compaction, and touched on each append
+            return Arrays.asList(attributes.fileKey(), attributes.size(), attributes.lastModifiedTime());
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static boolean isValidJournalHeader(byte[] journal) {
+        if (journal.length < JOURNAL_HEADER_SIZE) {
+            return false;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(journal);
+
+        return buffer.getInt(0) == JOURNAL_MAGIC && buffer.getInt(4) == JOURNAL_FORMAT_VERSION;
+    }
+
+    /**
+     * @return true if the journal has valid header of the journal of the snapshot with given length and checksum
+     */
+    private static boolean isJournalOf(byte[] journal, int snapshotLength, int snapshotChecksum) {
+        if (journal == null || !isValidJournalHeader(journal)) {
+            return false;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(journal);
+
+        return buffer.getInt(8) == snapshotLength && buffer.getInt(12) == snapshotChecksum;
+    }
+
+    /**
+     * @return Payload of the record at the offset, or null if the record is torn or corrupted
+     */
+    private static byte[] readRecord(byte[] journal, int offset) {
+        if (journal.length - offset < RECORD_HEADER_SIZE) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(journal);
+        int length = buffer.getInt(offset);
+        int checksum = buffer.getInt(offset + 4);
+        if (length < 0 || length > journal.length - offset - RECORD_HEADER_SIZE) {
+            return null;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(journal, offset + RECORD_HEADER_SIZE, length);
+        if ((int) crc.getValue() != checksum) {
+            return null;
+        }
+        byte[] payload = Arrays.copyOfRange(journal, offset + RECORD_HEADER_SIZE, offset + RECORD_HEADER_SIZE + length);
+
+        return Platform.isWindows() ? Crypt32Util.cryptUnprotectData(payload) : payload;
+    }
+
+    /**
+     * Parses JSON object into sections. Value of a section which is an object is a map of raw JSON
+     * of its entries by key, value of other sections is their raw JSON.
+     *
+     * @return Sections, empty for empty data, null if data is not a JSON object
+     */
+    static Map<String, Object> parseSections(byte[] data) {
+        Map<String, Object> sections = new LinkedHashMap<>();
+        if (data == null || data.length == 0) {
+            return sections;
+        }
+        try (JsonParser parser = JSON_FACTORY.createParser(data)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String section = parser.getCurrentName();
+
+                if (parser.nextToken() == JsonToken.START_OBJECT) {
+                    Map<String, byte[]> entries = new LinkedHashMap<>();
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        String key = parser.getCurrentName();
+                        parser.nextToken();
+                        entries.put(key, readRawValue(parser, data));
+                    }
+                    sections.put(section, entries);
+                } else {
+                    sections.put(section, readRawValue(parser, data));
+                }
+            }
+            if (parser.nextToken() != null) {
+                return null;
+            }
+            return sections;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static byte[] readRawValue(JsonParser parser, byte[] data) throws IOException {
+        int start = (int) parser.getTokenLocation().getByteOffset();
+        parser.skipChildren();
+        int end = (int) parser.getCurrentLocation().getByteOffset();
+
+        return Arrays.copyOfRange(data, start, end);
+    }
+
+    /**
+     * @return Changed entries of sections, null if the change is not limited to entries of sections
+     */
+    @SuppressWarnings("unchecked")
+    static Map<String, Object> diff(Map<String, Object> oldSections, Map<String, Object> newSections) {
+        Map<String, Object> delta = new LinkedHashMap<>();
+
+        Set<String> sectionNames = new LinkedHashSet<>(oldSections.keySet());
+        sectionNames.addAll(newSections.keySet());
+
+        for (String section : sectionNames) {
+            Object oldSection = oldSections.get(section);
+            Object newSection = newSections.get(section);
+
+            if (newSection == null) {
+                delta.put(section, NULL);
+                continue;
+            }
+            if (!(newSection instanceof Map) || (oldSection != null && !(oldSection instanceof Map))) {
+                if (oldSection instanceof byte[] && newSection instanceof byte[] &&
+                        Arrays.equals((byte[]) oldSection, (byte[]) newSection)) {
+                    continue;
+                }
+                return null;
+            }
+            Map<String, byte[]> oldEntries = oldSection != null ?
+                    (Map<String, byte[]>) oldSection : new LinkedHashMap<>();
+            Map<String, byte[]> newEntries = (Map<String, byte[]>) newSection;
+
+            Map<String, byte[]> sectionDelta = new LinkedHashMap<>();
+            for (String key : oldEntries.keySet()) {
+                if (!newEntries.containsKey(key)) {
+                    sectionDelta.put(key, NULL);
+                }
+            }
+            for (Map.Entry<String, byte[]> entry : newEntries.entrySet()) {
+                if (Arrays.equals(entry.getValue(), NULL)) {
+                    // null entry can not be told apart from removed one
+                    return null;
+                }
+                if (!Arrays.equals(entry.getValue(), oldEntries.get(entry.getKey()))) {
+                    sectionDelta.put(entry.getKey(), entry.getValue());
+                }
+            }
+            if (oldSection == null || !sectionDelta.isEmpty()) {
+                delta.put(section, sectionDelta);
+            }
+        }
+        return delta;
+    }
+
+    @SuppressWarnings("unchecked")
+    static void apply(Map<String, Object> sections, Map<String, Object> delta) {
+        for (Map.Entry<String, Object> section : delta.entrySet()) {
+            if (!(section.getValue() instanceof Map)) {
+                if (Arrays.equals((byte[]) section.getValue(), NULL)) {
+                    sections.remove(section.getKey());
+                } else {
+                    sections.put(section.getKey(), section.getValue());
+                }
+                continue;
+            }
+            Object entries = sections.get(section.getKey());
+            if (!(entries instanceof Map)) {
+                entries = new LinkedHashMap<String, byte[]>();
+                sections.put(section.getKey(), entries);
+            }
+            for (Map.Entry<String, byte[]> entry : ((Map<String, byte[]>) section.getValue()).entrySet()) {
+                if (Arrays.equals(entry.getValue(), NULL)) {
+                    ((Map<String, byte[]>) entries).remove(entry.getKey());
+                } else {
+                    ((Map<String, byte[]>) entries).put(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    static byte[] serializeSections(Map<String, Object> sections) {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        stream.write('{');
+
+        boolean firstSection = true;
+        for (Map.Entry<String, Object> section : sections.entrySet()) {
+            if (!firstSection) {
+                stream.write(',');
+            }
+            firstSection = false;
+            writeName(stream, section.getKey());
+
+            if (section.getValue() instanceof Map) {
+                stream.write('{');
+                boolean firstEntry = true;
+                for (Map.Entry<String, byte[]> entry : ((Map<String, byte[]>) section.getValue()).entrySet()) {
+                    if (!firstEntry) {
+                        stream.write(',');
+                    }
+                    firstEntry = false;
+                    writeName(stream, entry.getKey());
+                    stream.write(entry.getValue(), 0, entry.getValue().length);
+                }
+                stream.write('}');
+            } else {
+                byte[] value = (byte[]) section.getValue();
+                stream.write(value, 0, value.length);
+            }
+        }
+        stream.write('}');
+
+        return stream.toByteArray();
+    }
+
+    private static void writeName(ByteArrayOutputStream stream, String name) {
+        byte[] quoted = JsonStringEncoder.getInstance().quoteAsUTF8(name);
+
+        stream.write('"');
+        stream.write(quoted, 0, quoted.length);
+        stream.write('"');
+        stream.write(':');
+    }
+}
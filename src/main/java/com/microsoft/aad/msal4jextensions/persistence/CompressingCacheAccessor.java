@@ -0,0 +1,202 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.aad.msal4jextensions.persistence;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Implementation of CacheAccessor which compresses cache data with Deflate
+ * before passing it to another accessor, which stores it.
+ * Compressed data is preceded by a header, so uncompressed data written before compression was enabled
+ * is still read as is
+ */
+public class CompressingCacheAccessor implements ICacheAccessor {
+    private final static Logger LOG = LoggerFactory.getLogger(CompressingCacheAccessor.class);
+
+    /**
+     * Size of the header of compressed data in bytes
+     */
+    public static final int HEADER_SIZE = 8;
+
+    // not a valid start of UTF-8 text, so uncompressed cache can not be mistaken for compressed one
+    static final int MAGIC = 0x894D535A;
+
+    static final short FORMAT_VERSION = 1;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final ICacheAccessor cacheAccessor;
+    private final int compressionLevel;
+
+    /**
+     * Compresses with {@link Deflater#BEST_SPEED}, which for token caches is close in ratio to default level
+     *
+     * @param cacheAccessor Accessor which stores compressed data
+     */
+    public CompressingCacheAccessor(ICacheAccessor cacheAccessor) {
+        this(cacheAccessor, Deflater.BEST_SPEED);
+    }
+
+    /**
+     * @param cacheAccessor    Accessor which stores compressed data
+     * @param compressionLevel Deflate compression level, 0-9
+     */
+    public CompressingCacheAccessor(ICacheAccessor cacheAccessor, int compressionLevel) {
+        if (compressionLevel < Deflater.NO_COMPRESSION || compressionLevel > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("compressionLevel must be between 0 and 9");
+        }
+        this.cacheAccessor = cacheAccessor;
+        this.compressionLevel = compressionLevel;
+    }
+
+    /**
+     * @return Accessor which stores compressed data
+     */
+    public ICacheAccessor getCacheAccessor() {
+        return cacheAccessor;
+    }
+
+    /**
+     * @return True if the data starts with the header of compressed data
+     */
+    public static boolean isCompressed(byte[] data) {
+        return data != null && data.length >= HEADER_SIZE && ByteBuffer.wrap(data).getInt() == MAGIC;
+    }
+
+    @Override
+    public byte[] read() {
+        byte[] data = cacheAccessor.read();
+        if (!isCompressed(data)) {
+            return data;
+        }
+        checkFormatVersion(ByteBuffer.wrap(data).getShort(4));
+
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data, HEADER_SIZE, data.length - HEADER_SIZE);
+
+            // token caches compress several times
+            ByteArrayOutputStream stream = new ByteArrayOutputStream(data.length * 4);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (!inflater.finished()) {
+                int length = inflater.inflate(buffer);
+                if (length == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new CacheFileAccessException("Compressed cache data is truncated");
+                }
+                stream.write(buffer, 0, length);
+            }
+            return stream.toByteArray();
+        } catch (DataFormatException e) {
+            throw new CacheFileAccessException("Compressed cache data is corrupted", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    @Override
+    public InputStream openInputStream() {
+        InputStream stream = cacheAccessor.openInputStream();
+        if (stream == null) {
+            return null;
+        }
+
+        boolean streamReturned = false;
+        try {
+            PushbackInputStream pushbackStream = new PushbackInputStream(stream, HEADER_SIZE);
+            byte[] header = new byte[HEADER_SIZE];
+            int length = 0;
+            int readLength;
+            while (length < HEADER_SIZE &&
+                    (readLength = pushbackStream.read(header, length, HEADER_SIZE - length)) >= 0) {
+                length += readLength;
+            }
+
+            if (length < HEADER_SIZE || ByteBuffer.wrap(header).getInt() != MAGIC) {
+                pushbackStream.unread(header, 0, length);
+                streamReturned = true;
+                return pushbackStream;
+            }
+            checkFormatVersion(ByteBuffer.wrap(header).getShort(4));
+
+            Inflater inflater = new Inflater();
+            streamReturned = true;
+            return new InflaterInputStream(pushbackStream, inflater, BUFFER_SIZE) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        inflater.end();
+                    }
+                }
+            };
+        } catch (IOException e) {
+            throw new CacheFileAccessException("Failed to read compressed cache data", e);
+        } finally {
+            if (!streamReturned) {
+                close(stream);
+            }
+        }
+    }
+
+    private static void close(InputStream stream) {
+        try {
+            stream.close();
+        } catch (IOException e) {
+            LOG.warn("Failed to close cache data stream, " + e.getMessage());
+        }
+    }
+
+    private static void checkFormatVersion(short formatVersion) {
+        if (formatVersion != FORMAT_VERSION) {
+            throw new CacheFileAccessException("Unsupported compressed cache format version " + formatVersion);
+        }
+    }
+
+    @Override
+    public void write(byte[] data) {
+        write(stream -> stream.write(data));
+    }
+
+    /**
+     * Compresses data produced by the writer on the fly into the stream of the underlying accessor
+     */
+    @Override
+    public void write(ICacheDataWriter dataWriter) {
+        cacheAccessor.write(stream -> {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC);
+            header.putShort(FORMAT_VERSION);
+            header.putShort((short) 0);
+            stream.write(header.array());
+
+            Deflater deflater = new Deflater(compressionLevel);
+            try {
+                // not closed, as the stream belongs to the underlying accessor
+                DeflaterOutputStream deflaterStream = new DeflaterOutputStream(stream, deflater, BUFFER_SIZE);
+                dataWriter.writeTo(deflaterStream);
+                deflaterStream.finish();
+            } finally {
+                deflater.end();
+            }
+        });
+    }
+
+    @Override
+    public void delete() {
+        cacheAccessor.delete();
+    }
+}
@@ -3,6 +3,11 @@
 
 package com.microsoft.aad.msal4jextensions.persistence;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
 /**
  * Interface for cache data access operations.
  */
@@ -22,6 +27,37 @@ public interface ICacheAccessor {
      */
     void write(byte[] data);
 
+    /**
+     * Opens stream of cache data, which must be closed by the caller.
+     * Accessors which can read the cache without loading all of it into memory override this method,
+     * default implementation wraps {@link #read()}.
+     *
+     * @return Stream of cache data, null if there is no cache data
+     */
+    default InputStream openInputStream() {
+        byte[] data = read();
+
+        return data == null ? null : new ByteArrayInputStream(data);
+    }
+
+    /**
+     * Writes cache data produced by the writer. The cache is replaced only if the writer completes,
+     * so a failed writer leaves the cache intact.
+     * Accessors which can write the cache without holding all of it in memory override this method,
+     * default implementation collects the data and passes it to {@link #write(byte[])}.
+     *
+     * @param dataWriter Writer of cache data
+     */
+    default void write(ICacheDataWriter dataWriter) {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        try {
+            dataWriter.writeTo(stream);
+        } catch (IOException e) {
+            throw new CacheFileAccessException("Failed to write cache data", e);
+        }
+        write(stream.toByteArray());
+    }
+
     /**
      * Deletes the cache
      */
@@ -0,0 +1,22 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.aad.msal4jextensions.persistence;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes cache data to a stream, passed to {@link ICacheAccessor#write(ICacheDataWriter)}
+ */
+@FunctionalInterface
+public interface ICacheDataWriter {
+
+    /**
+     * Writes cache data
+     *
+     * @param stream Stream to write cache data to, must not be closed by the writer
+     * @throws IOException if the data can not be written
+     */
+    void writeTo(OutputStream stream) throws IOException;
+}
@@ -5,7 +5,9 @@ package com.microsoft.aad.msal4jextensions.persistence.linux;
 
 import com.sun.jna.Library;
 import com.sun.jna.Native;
+import com.sun.jna.NativeLong;
 import com.sun.jna.Pointer;
+import com.sun.jna.ptr.NativeLongByReference;
 
 /**
  * Interface which represents API for libsecret library on Linux.
@@ -103,4 +105,99 @@ public interface ISecurityLibrary extends Library {
                                    String attribute1Key, String attribute1Value,
                                    String attribute2Key, String attribute2Value,
                                    Pointer end);
+
+    /**
+     * Builds a table of attributes for the schema, to be passed to secret service functions
+     *
+     * @param schema          The schema for the attributes
+     * @param attribute1Key   Key of the attribute1
+     * @param attribute1Value Value of the attribute1
+     * @param attribute2Key   Key of the attribute2
+     * @param attribute2Value Value of the attribute2
+     * @param end             Null parameter to indicate end of attributes
+     * @return GHashTable of the attributes, released by {@link #g_hash_table_unref(Pointer)}
+     */
+    Pointer secret_attributes_build(Pointer schema,
+                                    String attribute1Key, String attribute1Value,
+                                    String attribute2Key, String attribute2Value,
+                                    Pointer end);
+
+    /**
+     * Releases a GHashTable, exported by glib which libsecret depends on
+     *
+     * @param hashTable The table to release
+     */
+    void g_hash_table_unref(Pointer hashTable);
+
+    /**
+     * Creates a secret value, which holds the secret as bytes rather than as a string
+     *
+     * @param secret      The secret data, copied into the value
+     * @param length      Length of the secret data
+     * @param contentType The content type of the data, like "application/octet-stream"
+     * @return The secret value, released by {@link #secret_value_unref(Pointer)}
+     */
+    Pointer secret_value_new(byte[] secret, NativeLong length, String contentType);
+
+    /**
+     * Gets the data of a secret value
+     *
+     * @param value  The secret value
+     * @param length Location to place the length of the data
+     * @return The data, owned by the secret value
+     */
+    Pointer secret_value_get(Pointer value, NativeLongByReference length);
+
+    /**
+     * Gets the content type of a secret value
+     *
+     * @param value The secret value
+     * @return The content type, owned by the secret value
+     */
+    String secret_value_get_content_type(Pointer value);
+
+    /**
+     * Releases a secret value
+     *
+     * @param value The secret value to release
+     */
+    void secret_value_unref(Pointer value);
+
+    /**
+     * Store a secret value in the secret service
+     *
+     * @param service     The secret service, or null to use the default one
+     * @param schema      The schema for the attributes
+     * @param attributes  The attributes built by {@link #secret_attributes_build}
+     * @param collection  A collection alias, or D-Bus object path of the collection where to store the secret
+     * @param label       Label for the secret
+     * @param value       The secret value to save
+     * @param cancellable Optional cancellation object
+     * @param error       Location to place an error on failure
+     * @return Whether the storage was successful or not
+     */
+    int secret_service_store_sync(Pointer service,
+                                  Pointer schema,
+                                  Pointer attributes,
+                                  String collection,
+                                  String label,
+                                  Pointer value,
+                                  Pointer cancellable,
+                                  Pointer[] error);
+
+    /**
+     * Lookup a secret value in the secret service
+     *
+     * @param service     The secret service, or null to use the default one
+     * @param schema      The schema for the attributes
+     * @param attributes  The attributes built by {@link #secret_attributes_build}
+     * @param cancellable Optional cancellation object
+     * @param error       Location to place an error on failure
+     * @return The retrieved secret value, released by {@link #secret_value_unref(Pointer)}, or null if not found
+     */
+    Pointer secret_service_lookup_sync(Pointer service,
+                                       Pointer schema,
+                                       Pointer attributes,
+                                       Pointer cancellable,
+                                       Pointer[] error);
 }
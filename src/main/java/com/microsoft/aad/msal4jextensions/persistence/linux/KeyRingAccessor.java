@@ -6,7 +6,9 @@ package com.microsoft.aad.msal4jextensions.persistence.linux;
 import com.microsoft.aad.msal4jextensions.persistence.CacheFileAccessor;
 import com.microsoft.aad.msal4jextensions.persistence.ICacheAccessor;
 import com.nimbusds.jose.util.StandardCharset;
+import com.sun.jna.NativeLong;
 import com.sun.jna.Pointer;
+import com.sun.jna.ptr.NativeLongByReference;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
@@ -17,6 +19,11 @@ import java.util.Base64;
  */
 public class KeyRingAccessor implements ICacheAccessor {
 
+    // content type of secrets stored by secret_password_store_sync
+    static final String TEXT_CONTENT_TYPE = "text/plain";
+
+    static final String BINARY_CONTENT_TYPE = "application/octet-stream";
+
     private String cacheFilePath;
 
     private String keyringCollection;
@@ -29,6 +36,8 @@ public class KeyRingAccessor implements ICacheAccessor {
     private String attributeKey2;
     private String attributeValue2;
 
+    private boolean binarySecret;
+
     private Pointer libSecretSchema;
 
     public KeyRingAccessor(String cacheFilePath,
@@ -37,7 +46,24 @@ public class KeyRingAccessor implements ICacheAccessor {
                            String keyringSecretLabel,
                            String attributeKey1, String attributeValue1,
                            String attributeKey2, String attributeValue2) {
+        this(cacheFilePath, keyringCollection, keyringSchemaName, keyringSecretLabel,
+                attributeKey1, attributeValue1, attributeKey2, attributeValue2, false);
+    }
+
+    /**
+     * @param binarySecret If true, the cache is stored as binary secret value instead of Base64 encoded password,
+     *                     which is 33% smaller and does not need to be encoded. Secrets stored as Base64 encoded
+     *                     passwords are read regardless of this setting, binary secrets are read only if it is set
+     */
+    public KeyRingAccessor(String cacheFilePath,
+                           String keyringCollection,
+                           String keyringSchemaName,
+                           String keyringSecretLabel,
+                           String attributeKey1, String attributeValue1,
+                           String attributeKey2, String attributeValue2,
+                           boolean binarySecret) {
 
+        this.binarySecret = binarySecret;
         this.cacheFilePath = cacheFilePath;
         this.keyringCollection = keyringCollection;
         this.keyringSchemaName = keyringSchemaName;
@@ -65,6 +91,9 @@ public class KeyRingAccessor implements ICacheAccessor {
     }
 
     private byte[] read(String attributeValue1, String attributeValue2) {
+        if (binarySecret) {
+            return readSecretValue(attributeValue1, attributeValue2);
+        }
         byte[] data = null;
 
         Pointer[] error = new Pointer[1];
@@ -88,6 +117,50 @@ public class KeyRingAccessor implements ICacheAccessor {
         return data;
     }
 
+    private byte[] readSecretValue(String attributeValue1, String attributeValue2) {
+        byte[] data = null;
+
+        Pointer[] error = new Pointer[1];
+
+        Pointer attributes = buildAttributes(attributeValue1, attributeValue2);
+        Pointer value;
+        try {
+            value = ISecurityLibrary.library.secret_service_lookup_sync(
+                    null,
+                    getLibSecretSchema(),
+                    attributes,
+                    null,
+                    error);
+        } finally {
+            ISecurityLibrary.library.g_hash_table_unref(attributes);
+        }
+
+        if (error[0] != Pointer.NULL) {
+            GError err = new GError(error[0]);
+            throw new KeyRingAccessException("An error while reading secret from keyring, " +
+                    "domain:" + err.domain + " code:" + err.code + " message:" + err.message);
+        } else if (value != Pointer.NULL) {
+            try {
+                NativeLongByReference length = new NativeLongByReference();
+                Pointer secret = ISecurityLibrary.library.secret_value_get(value, length);
+                String contentType = ISecurityLibrary.library.secret_value_get_content_type(value);
+
+                if (secret != Pointer.NULL && length.getValue().longValue() > 0) {
+                    data = secret.getByteArray(0, length.getValue().intValue());
+
+                    // stored as Base64 encoded password before binary secrets were enabled
+                    if (TEXT_CONTENT_TYPE.equals(contentType)) {
+                        data = Base64.getDecoder().decode(data);
+                    }
+                }
+            } finally {
+                ISecurityLibrary.library.secret_value_unref(value);
+            }
+        }
+
+        return data;
+    }
+
     @Override
     public byte[] read() {
         return read(attributeValue1, attributeValue2);
@@ -96,16 +169,20 @@ public class KeyRingAccessor implements ICacheAccessor {
     private void write(byte[] data, String attributeValue1, String attributeValue2) {
         Pointer[] error = new Pointer[1];
 
-        ISecurityLibrary.library.secret_password_store_sync(
-                getLibSecretSchema(),
-                keyringCollection,
-                keyringSecretLabel,
-                Base64.getEncoder().encodeToString(data),
-                null,
-                error,
-                attributeKey1, attributeValue1,
-                attributeKey2, attributeValue2,
-                null);
+        if (binarySecret) {
+            writeSecretValue(data, attributeValue1, attributeValue2, error);
+        } else {
+            ISecurityLibrary.library.secret_password_store_sync(
+                    getLibSecretSchema(),
+                    keyringCollection,
+                    keyringSecretLabel,
+                    Base64.getEncoder().encodeToString(data),
+                    null,
+                    error,
+                    attributeKey1, attributeValue1,
+                    attributeKey2, attributeValue2,
+                    null);
+        }
 
         if (error[0] != Pointer.NULL) {
             GError err = new GError(error[0]);
@@ -116,6 +193,42 @@ public class KeyRingAccessor implements ICacheAccessor {
         new CacheFileAccessor(cacheFilePath).updateCacheFileLastModifiedTime();
     }
 
+    private void writeSecretValue(byte[] data, String attributeValue1, String attributeValue2, Pointer[] error) {
+        Pointer value = ISecurityLibrary.library.secret_value_new(
+                data, new NativeLong(data.length), BINARY_CONTENT_TYPE);
+        try {
+            Pointer attributes = buildAttributes(attributeValue1, attributeValue2);
+            try {
+                ISecurityLibrary.library.secret_service_store_sync(
+                        null,
+                        getLibSecretSchema(),
+                        attributes,
+                        keyringCollection,
+                        keyringSecretLabel,
+                        value,
+                        null,
+                        error);
+            } finally {
+                ISecurityLibrary.library.g_hash_table_unref(attributes);
+            }
+        } finally {
+            ISecurityLibrary.library.secret_value_unref(value);
+        }
+    }
+
+    private Pointer buildAttributes(String attributeValue1, String attributeValue2) {
+        Pointer attributes = ISecurityLibrary.library.secret_attributes_build(
+                getLibSecretSchema(),
+                attributeKey1, attributeValue1,
+                attributeKey2, attributeValue2,
+                null);
+
+        if (attributes == Pointer.NULL) {
+            throw new KeyRingAccessException("Failed to build libSecret attributes for schema " + keyringSchemaName);
+        }
+        return attributes;
+    }
+
     @Override
     public void write(byte[] data) {
         write(data, attributeValue1, attributeValue2);
@@ -3,16 +3,38 @@
 
 package com.microsoft.aad.msal4jextensions;
 
+import com.microsoft.aad.msal4jextensions.persistence.CacheFileAccessException;
 import com.microsoft.aad.msal4jextensions.persistence.CacheFileAccessor;
+import com.microsoft.aad.msal4jextensions.persistence.CacheFileHeader;
+import com.microsoft.aad.msal4jextensions.persistence.CacheJournalAccessor;
+import com.microsoft.aad.msal4jextensions.persistence.CompressingCacheAccessor;
 import com.microsoft.aad.msal4jextensions.persistence.ICacheAccessor;
 import com.microsoft.aad.msal4jextensions.persistence.linux.KeyRingAccessor;
 import com.microsoft.aad.msal4jextensions.persistence.mac.KeyChainAccessor;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.sun.jna.Platform;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 public class CacheAccessorTest {
 
@@ -44,6 +66,396 @@ public class CacheAccessorTest {
         readWriteTest(cacheAccessor);
     }
 
+    @Test
+    public void framedCacheFileIOTest() throws IOException {
+
+        ICacheAccessor cacheAccessor = new CacheFileAccessor(cacheFilePath, true);
+
+        readWriteTest(cacheAccessor);
+    }
+
+    @Test
+    public void framedCacheFileHeaderTest() throws IOException {
+        CacheFileAccessor cacheAccessor = new CacheFileAccessor(cacheFilePath, true);
+        try {
+            cacheAccessor.delete();
+            Assert.assertNull(cacheAccessor.readHeader());
+
+            cacheAccessor.write("test data 1".getBytes());
+            CacheFileHeader header = cacheAccessor.readHeader();
+            Assert.assertEquals(1, header.getGeneration());
+
+            cacheAccessor.write("test data 2".getBytes());
+            header = cacheAccessor.readHeader();
+            Assert.assertEquals(2, header.getGeneration());
+            if (!Platform.isWindows()) {
+                Assert.assertEquals("test data 2".length(), header.getPayloadLength());
+            }
+        } finally {
+            cacheAccessor.delete();
+        }
+    }
+
+    @Test
+    public void framedCacheFileGenerationIsCarriedForward() throws IOException {
+        CacheFileAccessor cacheAccessor = new CacheFileAccessor(cacheFilePath, true);
+        CacheFileAccessor otherCacheAccessor = new CacheFileAccessor(cacheFilePath, true);
+        try {
+            cacheAccessor.delete();
+            cacheAccessor.write("test data 1".getBytes());
+            Assert.assertEquals(1, cacheAccessor.getLastHeader().getGeneration());
+
+            Assert.assertEquals("test data 1", new String(otherCacheAccessor.read()));
+            Assert.assertEquals(1, otherCacheAccessor.getLastHeader().getGeneration());
+            otherCacheAccessor.write("test data 2".getBytes());
+            Assert.assertEquals(2, otherCacheAccessor.getLastHeader().getGeneration());
+
+            Assert.assertEquals("test data 2", new String(cacheAccessor.read()));
+            Assert.assertEquals(2, cacheAccessor.getLastHeader().getGeneration());
+            cacheAccessor.write(stream -> stream.write("test data 3".getBytes()));
+            Assert.assertEquals(3, cacheAccessor.getLastHeader().getGeneration());
+            Assert.assertEquals(3, cacheAccessor.readHeader().getGeneration());
+        } finally {
+            cacheAccessor.delete();
+        }
+    }
+
+    @Test
+    public void framedAndUnframedCacheFilesAreCompatible() throws IOException {
+        CacheFileAccessor unframedCacheAccessor = new CacheFileAccessor(cacheFilePath);
+        CacheFileAccessor framedCacheAccessor = new CacheFileAccessor(cacheFilePath, true);
+        try {
+            unframedCacheAccessor.write("test data 1".getBytes());
+            Assert.assertNull(framedCacheAccessor.readHeader());
+            Assert.assertEquals("test data 1", new String(framedCacheAccessor.read()));
+
+            framedCacheAccessor.write("test data 2".getBytes());
+            Assert.assertEquals("test data 2", new String(unframedCacheAccessor.read()));
+        } finally {
+            unframedCacheAccessor.delete();
+        }
+    }
+
+    @Test
+    public void tornFramedCacheFileIsDetected() throws IOException {
+        CacheFileAccessor cacheAccessor = new CacheFileAccessor(cacheFilePath, true);
+        try {
+            cacheAccessor.write("test data 1".getBytes());
+
+            try (RandomAccessFile file = new RandomAccessFile(cacheFilePath, "rw")) {
+                file.setLength(file.length() - 1);
+            }
+            Assert.assertNull(cacheAccessor.read());
+
+            // next write replaces torn file
+            cacheAccessor.write("test data 2".getBytes());
+            Assert.assertEquals("test data 2", new String(cacheAccessor.read()));
+        } finally {
+            cacheAccessor.delete();
+        }
+    }
+
+    @Test
+    public void cacheFileStreamIOTest() throws IOException {
+        streamReadWriteTest(new CacheFileAccessor(cacheFilePath));
+    }
+
+    @Test
+    public void framedCacheFileStreamIOTest() throws IOException {
+        CacheFileAccessor cacheAccessor = new CacheFileAccessor(cacheFilePath, true);
+
+        streamReadWriteTest(cacheAccessor);
+        try {
+            cacheAccessor.write("test data 1".getBytes());
+            long generation = cacheAccessor.readHeader().getGeneration();
+            cacheAccessor.write(stream -> stream.write("test data 2".getBytes()));
+
+            CacheFileHeader header = cacheAccessor.readHeader();
+            Assert.assertEquals(generation + 1, header.getGeneration());
+            Assert.assertEquals(header, cacheAccessor.getLastHeader());
+            if (!Platform.isWindows()) {
+                Assert.assertEquals("test data 2".length(), header.getPayloadLength());
+            }
+            // checksum of the streamed payload is verified by the regular read
+            Assert.assertEquals("test data 2", new String(cacheAccessor.read()));
+        } finally {
+            cacheAccessor.delete();
+        }
+    }
+
+    @Test
+    public void failedStreamWriteKeepsCacheFile() throws IOException {
+        CacheFileAccessor cacheAccessor = new CacheFileAccessor(cacheFilePath);
+        try {
+            cacheAccessor.write("test data 1".getBytes());
+            try {
+                cacheAccessor.write(stream -> {
+                    stream.write("test data 2".getBytes());
+                    throw new IOException("test failure");
+                });
+                Assert.fail("Failed writer is expected to fail the write");
+            } catch (CacheFileAccessException e) {
+                Assert.assertEquals("test failure", e.getCause().getMessage());
+            }
+            Assert.assertEquals("test data 1", new String(cacheAccessor.read()));
+        } finally {
+            cacheAccessor.delete();
+        }
+    }
+
+    @Test
+    public void cacheJournalStreamIOTest() throws IOException {
+        // default stream methods of the accessor interface
+        streamReadWriteTest(new CacheJournalAccessor(cacheFilePath, false, 1024));
+    }
+
+    @Test
+    public void compressedCacheFileIOTest() throws IOException {
+        ICacheAccessor cacheAccessor = new CompressingCacheAccessor(new CacheFileAccessor(cacheFilePath));
+
+        readWriteTest(cacheAccessor);
+        streamReadWriteTest(cacheAccessor);
+    }
+
+    @Test
+    public void compressedCacheIsSmaller() throws IOException {
+        CacheFileAccessor cacheFileAccessor = new CacheFileAccessor(cacheFilePath);
+        ICacheAccessor cacheAccessor = new CompressingCacheAccessor(cacheFileAccessor);
+        try {
+            StringBuilder data = new StringBuilder("{\"AccessToken\":{");
+            for (int i = 0; i < 100; i++) {
+                data.append("\"").append(i).append("-login.microsoftonline.com-accesstoken\":")
+                        .append("{\"credential_type\":\"AccessToken\",\"client_id\":\"client\"},");
+            }
+            data.append("}}");
+
+            cacheAccessor.write(data.toString().getBytes());
+            byte[] storedData = cacheFileAccessor.read();
+
+            Assert.assertTrue(CompressingCacheAccessor.isCompressed(storedData));
+            Assert.assertTrue(storedData.length < data.length() / 4);
+            Assert.assertEquals(data.toString(), new String(cacheAccessor.read()));
+        } finally {
+            cacheAccessor.delete();
+        }
+    }
+
+    @Test
+    public void uncompressedAndCompressedCachesAreCompatible() throws IOException {
+        CacheFileAccessor cacheFileAccessor = new CacheFileAccessor(cacheFilePath, true);
+        ICacheAccessor cacheAccessor = new CompressingCacheAccessor(cacheFileAccessor);
+        try {
+            // written before compression was enabled
+            cacheFileAccessor.write("test data 1".getBytes());
+            Assert.assertEquals("test data 1", new String(cacheAccessor.read()));
+            try (InputStream stream = cacheAccessor.openInputStream()) {
+                byte[] data = new byte[32];
+                Assert.assertEquals("test data 1", new String(data, 0, stream.read(data)));
+            }
+
+            cacheAccessor.write("test data 2".getBytes());
+            Assert.assertEquals("test data 2", new String(cacheAccessor.read()));
+        } finally {
+            cacheAccessor.delete();
+        }
+    }
+
+    @Test
+    public void truncatedCompressedCacheIsDetected() throws IOException {
+        CacheFileAccessor cacheFileAccessor = new CacheFileAccessor(cacheFilePath);
+        ICacheAccessor cacheAccessor = new CompressingCacheAccessor(cacheFileAccessor);
+        try {
+            cacheAccessor.write("test data 1".getBytes());
+            byte[] storedData = cacheFileAccessor.read();
+            cacheFileAccessor.write(Arrays.copyOf(storedData, storedData.length - 4));
+
+            try {
+                cacheAccessor.read();
+                Assert.fail("Truncated compressed cache is expected to fail the read");
+            } catch (CacheFileAccessException e) {
+                Assert.assertEquals("Compressed cache data is truncated", e.getMessage());
+            }
+        } finally {
+            cacheAccessor.delete();
+        }
+    }
+
+    @Test
+    public void cacheJournalIOTest() throws IOException {
+
+        ICacheAccessor cacheAccessor = new CacheJournalAccessor(cacheFilePath, false, 1024);
+
+        readWriteTest(cacheAccessor);
+    }
+
+    @Test
+    public void cacheJournalReplaysChanges() throws IOException {
+        CacheJournalAccessor cacheAccessor = new CacheJournalAccessor(cacheFilePath, false, 1024 * 1024);
+        try {
+            cacheAccessor.delete();
+            String snapshot = "{\"AccessToken\":{\"a\":{\"secret\":\"1\"}},\"Account\":{\"x\":{}}}";
+            cacheAccessor.write(snapshot.getBytes());
+
+            String cache = "{\"AccessToken\":{\"a\":{\"secret\":\"2\"},\"b\":{\"secret\":\"3\"}}}";
+            cacheAccessor.write(cache.getBytes());
+
+            // snapshot is not rewritten, changes are in the journal
+            Assert.assertEquals(snapshot, new String(Files.readAllBytes(Paths.get(cacheFilePath))));
+            Assert.assertTrue(cacheAccessor.getJournalLength() > 0);
+
+            assertJsonEquals(cache, new CacheJournalAccessor(cacheFilePath, false, 1024 * 1024).read());
+        } finally {
+            cacheAccessor.delete();
+        }
+    }
+
+    @Test
+    public void cacheJournalTornTailIsIgnoredAndTruncated() throws IOException {
+        CacheJournalAccessor cacheAccessor = new CacheJournalAccessor(cacheFilePath, false, 1024 * 1024);
+        try {
+            cacheAccessor.delete();
+            String snapshot = "{\"AccessToken\":{}}";
+            cacheAccessor.write(snapshot.getBytes());
+            String cache = "{\"AccessToken\":{\"a\":{}}}";
+            cacheAccessor.write(cache.getBytes());
+            cacheAccessor.write("{\"AccessToken\":{\"a\":{},\"b\":{}}}".getBytes());
+
+            // writer crashed in the middle of the last record
+            try (RandomAccessFile file = new RandomAccessFile(cacheFilePath + ".journal", "rw")) {
+                file.setLength(file.length() - 1);
+            }
+            CacheJournalAccessor otherCacheAccessor = new CacheJournalAccessor(cacheFilePath, false, 1024 * 1024);
+            assertJsonEquals(cache, otherCacheAccessor.read());
+
+            String newCache = "{\"AccessToken\":{\"a\":{},\"c\":{}}}";
+            otherCacheAccessor.write(newCache.getBytes());
+            assertJsonEquals(newCache, new CacheJournalAccessor(cacheFilePath, false, 1024 * 1024).read());
+        } finally {
+            cacheAccessor.delete();
+        }
+    }
+
+    @Test
+    public void cacheJournalIsNotReplayedOnRewrittenSnapshot() throws IOException {
+        CacheJournalAccessor cacheAccessor = new CacheJournalAccessor(cacheFilePath, false, 1024 * 1024);
+        Path journalPath = Paths.get(cacheFilePath + ".journal");
+        try {
+            cacheAccessor.delete();
+            cacheAccessor.write("{\"AccessToken\":{\"a\":{}},\"Version\":1}".getBytes());
+            cacheAccessor.write("{\"AccessToken\":{\"a\":{},\"b\":{}},\"Version\":1}".getBytes());
+            byte[] journal = Files.readAllBytes(journalPath);
+
+            // change of a value which is not an entry rewrites the snapshot
+            String cache = "{\"AccessToken\":{\"c\":{}},\"Version\":2}";
+            cacheAccessor.write(cache.getBytes());
+            Assert.assertFalse(Files.exists(journalPath));
+
+            // journal left by a crash or a failed delete before the snapshot was replaced
+            Files.write(journalPath, journal);
+            CacheJournalAccessor otherCacheAccessor = new CacheJournalAccessor(cacheFilePath, false, 1024 * 1024);
+            assertJsonEquals(cache, otherCacheAccessor.read());
+
+            // next change replaces the stale journal
+            String newCache = "{\"AccessToken\":{\"c\":{},\"d\":{}},\"Version\":2}";
+            otherCacheAccessor.write(newCache.getBytes());
+            assertJsonEquals(newCache, new CacheJournalAccessor(cacheFilePath, false, 1024 * 1024).read());
+        } finally {
+            cacheAccessor.delete();
+        }
+    }
+
+    @Test
+    public void cacheJournalIsReadConcurrently() throws Exception {
+        CacheJournalAccessor cacheAccessor = new CacheJournalAccessor(cacheFilePath, false, 1024 * 1024);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            cacheAccessor.delete();
+            cacheAccessor.write("{\"AccessToken\":{\"a\":{}},\"Account\":{}}".getBytes());
+            for (int i = 0; i < 20; i++) {
+                cacheAccessor.write(("{\"AccessToken\":{\"a\":{},\"" + i + "\":{}},\"Account\":{}}").getBytes());
+            }
+            byte[] expected = new CacheJournalAccessor(cacheFilePath, false, 1024 * 1024).read();
+
+            // threads sharing the read lock read with the same accessor
+            List<Future<?>> readers = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                readers.add(executor.submit(() -> {
+                    for (int j = 0; j < 200; j++) {
+                        Assert.assertArrayEquals(expected, cacheAccessor.read());
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> reader : readers) {
+                reader.get(30, TimeUnit.SECONDS);
+            }
+            Assert.assertTrue(cacheAccessor.getJournalLength() > 0);
+        } finally {
+            executor.shutdownNow();
+            cacheAccessor.delete();
+        }
+    }
+
+    @Test
+    public void cacheJournalIsCompacted() throws IOException {
+        CacheJournalAccessor cacheAccessor = new CacheJournalAccessor(cacheFilePath, false, 0);
+        try {
+            cacheAccessor.delete();
+            cacheAccessor.write("{\"AccessToken\":{}}".getBytes());
+            String cache = "{\"AccessToken\":{\"a\":{}}}";
+            cacheAccessor.write(cache.getBytes());
+            Assert.assertTrue(cacheAccessor.isCompactionNeeded());
+
+            cacheAccessor.compact();
+
+            Assert.assertFalse(cacheAccessor.isCompactionNeeded());
+            Assert.assertFalse(Files.exists(Paths.get(cacheFilePath + ".journal")));
+            assertJsonEquals(cache, Files.readAllBytes(Paths.get(cacheFilePath)));
+        } finally {
+            cacheAccessor.delete();
+        }
+    }
+
+    private void assertJsonEquals(String expected, byte[] actual) throws IOException {
+        JsonFactory jsonFactory = new JsonFactory();
+        try (JsonParser expectedParser = jsonFactory.createParser(expected);
+             JsonParser actualParser = jsonFactory.createParser(actual)) {
+            expectedParser.nextToken();
+            actualParser.nextToken();
+            Assert.assertEquals(readJsonValue(expectedParser), readJsonValue(actualParser));
+        }
+    }
+
+    /**
+     * Reads JSON value at the current token into maps, lists and scalars,
+     * so that objects are compared regardless of the order of their fields
+     */
+    private static Object readJsonValue(JsonParser parser) throws IOException {
+        switch (parser.currentToken()) {
+            case START_OBJECT:
+                Map<String, Object> fields = new HashMap<>();
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String name = parser.getCurrentName();
+                    parser.nextToken();
+                    fields.put(name, readJsonValue(parser));
+                }
+                return fields;
+            case START_ARRAY:
+                List<Object> elements = new ArrayList<>();
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    elements.add(readJsonValue(parser));
+                }
+                return elements;
+            case VALUE_NUMBER_INT:
+            case VALUE_NUMBER_FLOAT:
+                return parser.getDecimalValue();
+            case VALUE_NULL:
+                return null;
+            default:
+                return parser.getText();
+        }
+    }
+
     @Test
     public void keyRingIOTest() throws IOException {
         if(!Platform.isLinux()){
@@ -70,6 +482,36 @@ public class CacheAccessorTest {
         readWriteTest(cacheAccessor);
     }
 
+    @Test
+    public void keyRingBinarySecretIOTest() throws IOException {
+        if(!Platform.isLinux()){
+            return;
+        }
+        String keyringSchemaName = "TestSchemaName";
+        String keyringSecretLabel = "TestSecretLabel";
+        String attributeKey1 = "TestAttributeKey1";
+        String attributeValue1 = "TestAttributeValue1";
+        String attributeKey2 = "TestAttributeKey2";
+        String attributeValue2 = "TestAttributeValue2";
+
+        ICacheAccessor cacheAccessor = new KeyRingAccessor(cacheFilePath, null,
+                keyringSchemaName, keyringSecretLabel,
+                attributeKey1, attributeValue1, attributeKey2, attributeValue2, true);
+
+        readWriteTest(cacheAccessor);
+
+        // secret stored as Base64 encoded password is still read
+        ICacheAccessor base64CacheAccessor = new KeyRingAccessor(cacheFilePath, null,
+                keyringSchemaName, keyringSecretLabel,
+                attributeKey1, attributeValue1, attributeKey2, attributeValue2);
+        try {
+            base64CacheAccessor.write("test data 1".getBytes());
+            Assert.assertEquals("test data 1", new String(cacheAccessor.read()));
+        } finally {
+            cacheAccessor.delete();
+        }
+    }
+
     private void readWriteAssert(ICacheAccessor cacheAccessor, String data) throws IOException {
         cacheAccessor.write(data.getBytes());
         String receivedString = new String(cacheAccessor.read());
@@ -78,6 +520,33 @@ public class CacheAccessorTest {
     }
 
 
+    private void streamReadWriteAssert(ICacheAccessor cacheAccessor, String data) throws IOException {
+        cacheAccessor.write(stream -> stream.write(data.getBytes()));
+
+        ByteArrayOutputStream receivedData = new ByteArrayOutputStream();
+        try (InputStream stream = cacheAccessor.openInputStream()) {
+            byte[] buffer = new byte[4];
+            int length;
+            while ((length = stream.read(buffer)) >= 0) {
+                receivedData.write(buffer, 0, length);
+            }
+        }
+
+        Assert.assertEquals(data, receivedData.toString());
+    }
+
+    private void streamReadWriteTest(ICacheAccessor cacheAccessor) throws IOException {
+        try {
+            cacheAccessor.delete();
+            Assert.assertNull(cacheAccessor.openInputStream());
+
+            streamReadWriteAssert(cacheAccessor, "test data 1");
+            streamReadWriteAssert(cacheAccessor, "test data 2");
+        } finally {
+            cacheAccessor.delete();
+        }
+    }
+
     private void readWriteTest(ICacheAccessor cacheAccessor) throws IOException {
         try {
             cacheAccessor.delete();
@@ -8,9 +8,14 @@ import com.microsoft.aad.msal4jextensions.persistence.CacheFileAccessor;
 class CacheFileWriterRunnable extends CacheWriterRunnable {
 
     CacheFileWriterRunnable(String id, String lockFilePath, String filePath, String lockHoldingIntervalsFilePath) {
+        this(id, new CrossProcessCacheFileLock(lockFilePath, 150, 100), filePath, lockHoldingIntervalsFilePath);
+    }
+
+    CacheFileWriterRunnable(String id, CrossProcessCacheFileLock lock, String filePath,
+                            String lockHoldingIntervalsFilePath) {
         this.lockHoldingIntervalsFilePath = lockHoldingIntervalsFilePath;
 
-        lock = new CrossProcessCacheFileLock(lockFilePath, 150, 100);
+        this.lock = lock;
         cacheAccessor = new CacheFileAccessor(filePath);
     }
 }
\ No newline at end of file
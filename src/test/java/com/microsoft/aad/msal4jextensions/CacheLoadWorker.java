@@ -0,0 +1,161 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.aad.msal4jextensions;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.LogManager;
+
+import java.io.FileOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Load worker process: its threads issue a mix of read and write cache accesses through
+ * {@link PersistenceTokenCacheAccessAspect} for a fixed duration, and results are written to a file
+ * to be merged by {@link CacheLockTestBase#multipleProcessesLoad}.
+ */
+public class CacheLoadWorker {
+
+    static final String BACKEND_FILE = "file";
+    static final String BACKEND_KEYRING = "keyring";
+    static final String BACKEND_KEYCHAIN = "keychain";
+
+    private final PersistenceTokenCacheAccessAspect aspect;
+    private final int writePercent;
+    private final String cacheData;
+
+    final LongAdder reads = new LongAdder();
+    final LongAdder writes = new LongAdder();
+    final LongAdder errors = new LongAdder();
+    final LatencyHistogram readLatency = new LatencyHistogram();
+    final LatencyHistogram writeLatency = new LatencyHistogram();
+
+    CacheLoadWorker(String backend, String lockMode, Path cacheDirectory, int writePercent, int cacheSize)
+            throws Exception {
+        this.writePercent = writePercent;
+
+        PersistenceSettings.Builder builder = PersistenceSettings.builder("loadTestCache", cacheDirectory)
+                .setLockRetry(10, 3000)
+                .setSharedReadLock(lockMode.equals("shared"))
+                .setLockBlockingWait(lockMode.equals("blocking"))
+                .setLockFilePersistent(lockMode.equals("persistent"));
+
+        switch (backend) {
+            case BACKEND_FILE:
+                builder.setLinuxUseUnprotectedFileAsCacheStorage(true);
+                break;
+            case BACKEND_KEYRING:
+                builder.setLinuxKeyring(null, "MsalLoadTestSchema", "MsalLoadTestSecretLabel",
+                        "MsalLoadTestAttribute1Key", "MsalLoadTestAttribute1Value",
+                        "MsalLoadTestAttribute2Key", "MsalLoadTestAttribute2Value");
+                break;
+            case BACKEND_KEYCHAIN:
+                builder.setMacKeychain("MsalLoadTestService", "MsalLoadTestAccount");
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown backend " + backend);
+        }
+        aspect = new PersistenceTokenCacheAccessAspect(builder.build());
+
+        char[] filler = new char[Math.max(0, cacheSize - 32)];
+        Arrays.fill(filler, 'x');
+        cacheData = new String(filler);
+    }
+
+    /**
+     * Issues cache accesses until the end time
+     */
+    void run(String workerId, long endNanoTime) {
+        TestTokenCacheAccessContext.TestTokenCache tokenCache = new TestTokenCacheAccessContext.TestTokenCache();
+        TestTokenCacheAccessContext readContext = new TestTokenCacheAccessContext(workerId, false, tokenCache);
+        TestTokenCacheAccessContext writeContext = new TestTokenCacheAccessContext(workerId, true, tokenCache);
+
+        for (long op = 0; System.nanoTime() < endNanoTime; op++) {
+            boolean write = ThreadLocalRandom.current().nextInt(100) < writePercent;
+            TestTokenCacheAccessContext context = write ? writeContext : readContext;
+
+            long start = System.nanoTime();
+            try {
+                aspect.beforeCacheAccess(context);
+                if (write) {
+                    tokenCache.data = "{\"" + workerId + "\":" + op + ",\"data\":\"" + cacheData + "\"}";
+                }
+                aspect.afterCacheAccess(context);
+            } catch (RuntimeException ex) {
+                errors.increment();
+                continue;
+            }
+            long latency = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+            if (write) {
+                writes.increment();
+                writeLatency.record(latency);
+            } else {
+                reads.increment();
+                readLatency.record(latency);
+            }
+        }
+    }
+
+    LockStatistics getLockStatistics() {
+        return aspect.getLockStatistics();
+    }
+
+    /**
+     * Arguments: workerId backend lockMode cacheDirectory threads startAtMillis durationMillis
+     * writePercent cacheSize resultFile
+     */
+    public static void main(String[] args) throws Exception {
+        // debug logging of the lock would dominate the measurement
+        LogManager.getRootLogger().setLevel(Level.WARN);
+
+        String workerId = args[0];
+        String backend = args[1];
+        String lockMode = args[2];
+        Path cacheDirectory = Paths.get(args[3]);
+        int threads = Integer.parseInt(args[4]);
+        long startAtMillis = Long.parseLong(args[5]);
+        long durationMillis = Long.parseLong(args[6]);
+        int writePercent = Integer.parseInt(args[7]);
+        int cacheSize = Integer.parseInt(args[8]);
+        String resultFile = args[9];
+
+        CacheLoadWorker worker = new CacheLoadWorker(backend, lockMode, cacheDirectory, writePercent, cacheSize);
+
+        // all processes start the load at the same time
+        Thread.sleep(Math.max(0, startAtMillis - System.currentTimeMillis()));
+        long endNanoTime = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(durationMillis);
+
+        List<Thread> workerThreads = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            String threadWorkerId = workerId + "_" + i;
+            Thread thread = new Thread(() -> worker.run(threadWorkerId, endNanoTime));
+            thread.start();
+            workerThreads.add(thread);
+        }
+        for (Thread thread : workerThreads) {
+            thread.join();
+        }
+
+        LockStatistics lockStatistics = worker.getLockStatistics();
+        String result = "reads " + worker.reads.sum() + "\n" +
+                "writes " + worker.writes.sum() + "\n" +
+                "errors " + worker.errors.sum() + "\n" +
+                "readLatency " + worker.readLatency.serialize() + "\n" +
+                "writeLatency " + worker.writeLatency.serialize() + "\n" +
+                "lockWait " + Arrays.stream(lockStatistics.getWaitTimeHistogram())
+                .mapToObj(Long::toString).collect(Collectors.joining(" ")) + "\n";
+
+        try (FileOutputStream os = new FileOutputStream(resultFile)) {
+            os.write(result.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
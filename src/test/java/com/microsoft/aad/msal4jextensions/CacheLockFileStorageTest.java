@@ -4,6 +4,7 @@
 package com.microsoft.aad.msal4jextensions;
 
 import com.microsoft.aad.msal4jextensions.persistence.CacheFileAccessor;
+import org.junit.Assert;
 import org.junit.Test;
 
 import java.io.IOException;
@@ -20,6 +21,40 @@ public class CacheLockFileStorageTest extends CacheLockTestBase {
         }
     }
 
+    class SharedReadLockCacheFileWriterRunnableFactory implements IRunnableFactory {
+        @Override
+        public Runnable create(String id) {
+            // each lock mode uses its own lock file, as modes can not share one
+            CrossProcessCacheFileLock lock =
+                    new CrossProcessCacheFileLock(lockFilePath + ".shared",
+                            new FixedLockRetryPolicy(150, 100), true, false, false);
+
+            return new CacheFileWriterRunnable(id, lock, testFilePath, lockHoldingIntervalsFilePath);
+        }
+    }
+
+    class BlockingWaitCacheFileWriterRunnableFactory implements IRunnableFactory {
+        @Override
+        public Runnable create(String id) {
+            CrossProcessCacheFileLock lock =
+                    new CrossProcessCacheFileLock(lockFilePath + ".blocking",
+                            new FixedLockRetryPolicy(150, 100), true, true, false);
+
+            return new CacheFileWriterRunnable(id, lock, testFilePath, lockHoldingIntervalsFilePath);
+        }
+    }
+
+    class PersistentLockFileCacheFileWriterRunnableFactory implements IRunnableFactory {
+        @Override
+        public Runnable create(String id) {
+            CrossProcessCacheFileLock lock =
+                    new CrossProcessCacheFileLock(lockFilePath + ".persistent",
+                            new FixedLockRetryPolicy(150, 100), false, false, true);
+
+            return new CacheFileWriterRunnable(id, lock, testFilePath, lockHoldingIntervalsFilePath);
+        }
+    }
+
     @Test
     public void multipleThreadsWriting_CacheFile() throws IOException, InterruptedException {
         int numOfThreads = 50;
@@ -27,6 +62,43 @@ public class CacheLockFileStorageTest extends CacheLockTestBase {
         multipleThreadsWriting(cacheFileAccessor, numOfThreads, new CacheFileWriterRunnableFactory());
     }
 
+    @Test
+    public void multipleThreadsWriting_CacheFile_SharedReadLock() throws IOException, InterruptedException {
+        int numOfThreads = 50;
+
+        multipleThreadsWriting(cacheFileAccessor, numOfThreads, new SharedReadLockCacheFileWriterRunnableFactory());
+    }
+
+    @Test
+    public void multipleThreadsWriting_CacheFile_BlockingWait() throws IOException, InterruptedException {
+        int numOfThreads = 50;
+
+        multipleThreadsWriting(cacheFileAccessor, numOfThreads, new BlockingWaitCacheFileWriterRunnableFactory());
+    }
+
+    @Test
+    public void multipleThreadsWriting_CacheFile_PersistentLockFile() throws IOException, InterruptedException {
+        int numOfThreads = 50;
+
+        multipleThreadsWriting(cacheFileAccessor, numOfThreads, new PersistentLockFileCacheFileWriterRunnableFactory());
+    }
+
+    //@Test
+    public void multipleProcessesLoad_CacheFile() throws IOException, InterruptedException {
+        // spawns JVMs, run manually, override with -Dload.* properties to size bigger deployments
+        LoadResult result = multipleProcessesLoad(CacheLoadWorker.BACKEND_FILE,
+                System.getProperty("load.lockMode", "legacy"),
+                Integer.getInteger("load.processes", 2),
+                Integer.getInteger("load.threads", 2),
+                Integer.getInteger("load.durationSeconds", 3),
+                Integer.getInteger("load.writePercent", 20),
+                Integer.getInteger("load.cacheSize", 10 * 1024));
+
+        Assert.assertEquals("failed cache accesses", 0, result.errors);
+        Assert.assertTrue("no cache reads completed", result.reads > 0);
+        Assert.assertTrue("no cache writes completed", result.writes > 0);
+    }
+
     //@Test
     public void multipleProcessesWriting_CacheFile() throws IOException, InterruptedException {
         int numOfProcesses = 20;
@@ -0,0 +1,49 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.aad.msal4jextensions;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Takes the lock and holds it until a line is read from the input, or until the process is killed.
+ * Arguments - lock file path, and optionally lock mode (legacy, shared or blocking) and lock type (read or write)
+ */
+public class CacheLockHolder {
+
+    public static void main(String[] args) throws Exception {
+        String lockFilePath = args[0];
+        String lockMode = args.length > 1 ? args[1] : "legacy";
+        boolean readLock = args.length > 2 && args[2].equals("read");
+
+        CrossProcessCacheFileLock lock;
+        if (lockMode.equals("legacy")) {
+            lock = new CrossProcessCacheFileLock(lockFilePath, 100, 20);
+        } else {
+            lock = new CrossProcessCacheFileLock(lockFilePath, new FixedLockRetryPolicy(100, 100),
+                    true, lockMode.equals("blocking"), false);
+        }
+
+        if (readLock) {
+            lock.readLock();
+        } else {
+            lock.lock();
+        }
+
+        System.out.println("locked");
+        System.out.flush();
+
+        BufferedReader input = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        if (input.readLine() != null) {
+            lock.unlock();
+
+            System.out.println("unlocked");
+            System.out.flush();
+        }
+
+        // keep the process alive until it is killed
+        Thread.sleep(Long.MAX_VALUE);
+    }
+}
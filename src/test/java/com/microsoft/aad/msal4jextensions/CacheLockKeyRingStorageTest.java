@@ -65,4 +65,9 @@ public class CacheLockKeyRingStorageTest extends CacheLockTestBase {
 
         multipleProcessesWriting(keyRingAccessor, numOfProcesses, writerClass, writerClassArgs);
     }
+
+    //@Test
+    public void multipleProcessesLoad_KeyRing() throws IOException, InterruptedException {
+        multipleProcessesLoad(CacheLoadWorker.BACKEND_KEYRING, "legacy", 4, 4, 30, 20, 100 * 1024);
+    }
 }
@@ -7,6 +7,8 @@ import com.microsoft.aad.msal4jextensions.persistence.ICacheAccessor;
 import com.sun.jna.Platform;
 import org.junit.Assert;
 import org.junit.BeforeClass;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.*;
 import java.nio.charset.StandardCharsets;
@@ -16,9 +18,12 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 public class CacheLockTestBase {
+    private final static Logger LOG = LoggerFactory.getLogger(CacheLockTestBase.class);
+
     static String folder;
     static String testFilePath;
     static String lockFilePath;
@@ -191,4 +196,133 @@ public class CacheLockTestBase {
         validateLockUsageIntervals(num);
         validateResultInCache(cacheAccessor, num);
     }
+
+    /**
+     * Merged results of load worker processes
+     */
+    static class LoadResult {
+        long reads;
+        long writes;
+        long errors;
+        double throughput;
+        LatencyHistogram readLatency = new LatencyHistogram();
+        LatencyHistogram writeLatency = new LatencyHistogram();
+        long[] lockWaitHistogram = new long[LockStatistics.HISTOGRAM_BUCKETS];
+
+        long getLockWaitPercentile(double percentile) {
+            return new LockStatistics(0, 0, 0, 0, 0, lockWaitHistogram, new long[LockStatistics.HISTOGRAM_BUCKETS])
+                    .getWaitTimePercentileMicroseconds(percentile);
+        }
+    }
+
+    /**
+     * Runs load of numOfProcesses processes with numOfThreads threads each, issuing read and write cache accesses
+     * for durationSeconds, and reports throughput, end-to-end latency and lock wait percentiles.
+     *
+     * @param backend       {@link CacheLoadWorker#BACKEND_FILE}, {@link CacheLoadWorker#BACKEND_KEYRING}
+     *                      or {@link CacheLoadWorker#BACKEND_KEYCHAIN}
+     * @param lockMode      legacy, persistent, shared or blocking
+     * @param writePercent  Percent of write accesses, the rest are read accesses
+     * @param cacheSize     Approximate size of the cache in bytes
+     */
+    LoadResult multipleProcessesLoad(String backend, String lockMode,
+                                     int numOfProcesses, int numOfThreads, int durationSeconds,
+                                     int writePercent, int cacheSize) throws IOException, InterruptedException {
+
+        java.nio.file.Path loadDirectory = Files.createTempDirectory("msal4jextensions-load");
+
+        // give JVMs time to start, so all of them apply the load for the same period
+        long startAtMillis = System.currentTimeMillis() + 3000;
+
+        List<Process> processes = new ArrayList<>();
+        List<java.nio.file.Path> resultFiles = new ArrayList<>();
+        for (int i = 0; i < numOfProcesses; i++) {
+            java.nio.file.Path resultFile = loadDirectory.resolve("result_" + i + ".txt");
+            resultFiles.add(resultFile);
+
+            String[] javaCommand = new String[]{
+                    Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                    "-cp", System.getProperty("java.class.path"),
+                    CacheLoadWorker.class.getName(),
+                    "Process_" + i,
+                    backend,
+                    lockMode,
+                    loadDirectory.toString(),
+                    Integer.toString(numOfThreads),
+                    Long.toString(startAtMillis),
+                    Long.toString(TimeUnit.SECONDS.toMillis(durationSeconds)),
+                    Integer.toString(writePercent),
+                    Integer.toString(cacheSize),
+                    resultFile.toString()};
+
+            processes.add(new ProcessBuilder(javaCommand).inheritIO().start());
+        }
+
+        for (Process process : processes) {
+            if (process.waitFor() != 0) {
+                throw new RuntimeException("Load worker process failed");
+            }
+        }
+
+        LoadResult result = new LoadResult();
+        for (java.nio.file.Path resultFile : resultFiles) {
+            for (String line : readFile(resultFile.toString()).split("\\r?\\n")) {
+                String name = line.substring(0, line.indexOf(' '));
+                String value = line.substring(line.indexOf(' ') + 1);
+                switch (name) {
+                    case "reads":
+                        result.reads += Long.parseLong(value);
+                        break;
+                    case "writes":
+                        result.writes += Long.parseLong(value);
+                        break;
+                    case "errors":
+                        result.errors += Long.parseLong(value);
+                        break;
+                    case "readLatency":
+                        result.readLatency.add(LatencyHistogram.deserialize(value));
+                        break;
+                    case "writeLatency":
+                        result.writeLatency.add(LatencyHistogram.deserialize(value));
+                        break;
+                    case "lockWait":
+                        String[] counts = value.split(" ");
+                        for (int i = 0; i < counts.length; i++) {
+                            result.lockWaitHistogram[i] += Long.parseLong(counts[i]);
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+        try (java.util.stream.Stream<java.nio.file.Path> files = Files.list(loadDirectory)) {
+            for (java.nio.file.Path file : files.collect(Collectors.toList())) {
+                Files.deleteIfExists(file);
+            }
+        }
+        Files.deleteIfExists(loadDirectory);
+
+        result.throughput = (double) (result.reads + result.writes) / durationSeconds;
+
+        LOG.info(String.format("LOAD backend %s, lock mode %s, %d processes x %d threads, " +
+                        "%d%% writes, %d bytes cache, %d s",
+                backend, lockMode, numOfProcesses, numOfThreads, writePercent, cacheSize, durationSeconds));
+        LOG.info(String.format("  throughput %.1f ops/s, reads %d, writes %d, errors %d",
+                result.throughput, result.reads, result.writes, result.errors));
+        LOG.info(String.format("  read latency   p50 %d us, p99 %d us, p999 %d us",
+                result.readLatency.getPercentile(50),
+                result.readLatency.getPercentile(99),
+                result.readLatency.getPercentile(99.9)));
+        LOG.info(String.format("  write latency  p50 %d us, p99 %d us, p999 %d us",
+                result.writeLatency.getPercentile(50),
+                result.writeLatency.getPercentile(99),
+                result.writeLatency.getPercentile(99.9)));
+        LOG.info(String.format("  lock wait      p50 <%d us, p99 <%d us, p999 <%d us",
+                result.getLockWaitPercentile(50),
+                result.getLockWaitPercentile(99),
+                result.getLockWaitPercentile(99.9)));
+
+        return result;
+    }
 }
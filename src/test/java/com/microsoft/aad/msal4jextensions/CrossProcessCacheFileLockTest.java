@@ -0,0 +1,482 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.aad.msal4jextensions;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+public class CrossProcessCacheFileLockTest {
+
+    String lockFilePath;
+
+    @Before
+    public void init() {
+        lockFilePath = java.nio.file.Paths.get(System.getProperty("user.home"), "testLockUnit.lockfile").toString();
+    }
+
+    private CrossProcessCacheFileLock createLock() {
+        return new CrossProcessCacheFileLock(lockFilePath, 100, 20);
+    }
+
+    @Test
+    public void localReadersShareLock() throws Exception {
+        CrossProcessCacheFileLock lock1 = createLock();
+        CrossProcessCacheFileLock lock2 = createLock();
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            lock1.readLock();
+
+            // second local reader does not wait for the first one
+            Future<Long> readLockTime = executor.submit(() -> {
+                long start = System.nanoTime();
+                lock2.readLock();
+                lock2.unlock();
+                return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            });
+            Assert.assertTrue(readLockTime.get(5, TimeUnit.SECONDS) < 100);
+
+            lock1.unlock();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void localWriterIsHandedLockWithoutPolling() throws Exception {
+        CrossProcessCacheFileLock lock1 = createLock();
+        CrossProcessCacheFileLock lock2 = createLock();
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            lock1.lock();
+
+            CountDownLatch started = new CountDownLatch(1);
+            Future<Long> releaseToAcquireTime = executor.submit(() -> {
+                started.countDown();
+                lock2.lock();
+                long acquired = System.nanoTime();
+                lock2.unlock();
+                return acquired;
+            });
+            started.await();
+            Thread.sleep(200);
+            Assert.assertFalse(releaseToAcquireTime.isDone());
+
+            long released = System.nanoTime();
+            lock1.unlock();
+
+            // retry delay is 100 ms, hand off between local threads does not wait for it
+            long handOffMillis = TimeUnit.NANOSECONDS.toMillis(releaseToAcquireTime.get(5, TimeUnit.SECONDS) - released);
+            Assert.assertTrue("hand off took " + handOffMillis + " ms", handOffMillis < 100);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void nestedLockIsReentrant() throws Exception {
+        CrossProcessCacheFileLock lock = createLock();
+        CrossProcessCacheFileLock otherLock = createLock();
+
+        lock.lock();
+        // nested calls on the same thread, through the same or other lock of the same file
+        lock.lock();
+        otherLock.readLock();
+        otherLock.unlock();
+        lock.unlock();
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            // still held by the outer hold
+            Future<?> otherThreadLock = executor.submit(() -> {
+                otherLock.lock();
+                otherLock.unlock();
+                return null;
+            });
+            Thread.sleep(200);
+            Assert.assertFalse(otherThreadLock.isDone());
+
+            lock.unlock();
+            otherThreadLock.get(5, TimeUnit.SECONDS);
+
+            // unlock without a hold does nothing
+            lock.unlock();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test(expected = CacheFileLockAcquisitionException.class)
+    public void writeLockWhileHoldingReadLockFails() throws Exception {
+        CrossProcessCacheFileLock lock = createLock();
+
+        lock.readLock();
+        try {
+            lock.lock();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void conflictingLockProtocolIsRejected() {
+        createLock();
+
+        new CrossProcessCacheFileLock(lockFilePath, new FixedLockRetryPolicy(100, 20),
+                true, false, false);
+    }
+
+    @Test
+    public void localReaderGivesUpAtDeadline() throws Exception {
+        Process holder = startLockHolder(lockFilePath);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            // first reader retries to acquire OS lock held by the other process
+            Future<?> firstReader = executor.submit(() -> {
+                CrossProcessCacheFileLock lock = createLock();
+                lock.readLock();
+                lock.unlock();
+                return null;
+            });
+            Thread.sleep(200);
+
+            CrossProcessCacheFileLock lock = new CrossProcessCacheFileLock(lockFilePath, 10, 10);
+            long start = System.nanoTime();
+            try {
+                lock.readLock();
+                lock.unlock();
+                Assert.fail("read lock is held by other process");
+            } catch (CacheFileLockAcquisitionException ex) {
+                long waitMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                // gives up after its own 100 ms timeout, instead of waiting for the first reader
+                Assert.assertTrue("waited " + waitMillis + " ms", waitMillis < 1000);
+            }
+            Assert.assertFalse(firstReader.isDone());
+
+            // first reader acquires lock of the killed holder
+            holder.destroyForcibly().waitFor();
+            firstReader.get(5, TimeUnit.SECONDS);
+        } finally {
+            holder.destroyForcibly().waitFor();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void lockFileOfKilledProcessIsReclaimed() throws Exception {
+        startLockHolder(lockFilePath).destroyForcibly().waitFor();
+        // lock file is left behind by the killed holder
+        Assert.assertTrue(new File(lockFilePath).exists());
+
+        CrossProcessCacheFileLock lock = createLock();
+
+        long start = System.nanoTime();
+        lock.lock();
+        long recoveryMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        lock.unlock();
+
+        // retry budget is 2 seconds, stale lock file is reclaimed on the first retry
+        Assert.assertTrue("recovery took " + recoveryMillis + " ms", recoveryMillis < 500);
+    }
+
+    @Test
+    public void processesShareReadLockUntilWriterWaits() throws Exception {
+        String sharedLockFilePath = lockFilePath + ".shared";
+        Process reader1 = null;
+        Process reader2 = null;
+        Process reader3 = null;
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            // both processes hold read lock at the same time
+            reader1 = startLockHolder(sharedLockFilePath, "shared", "read");
+            reader2 = startLockHolder(sharedLockFilePath, "shared", "read");
+
+            CrossProcessCacheFileLock writerLock = new CrossProcessCacheFileLock(sharedLockFilePath,
+                    new FixedLockRetryPolicy(50, 400), true, false, false);
+            Future<?> writer = executor.submit(() -> {
+                writerLock.lock();
+                writerLock.unlock();
+                return null;
+            });
+            Thread.sleep(500);
+            Assert.assertFalse("writer acquired lock held by readers", writer.isDone());
+
+            // waiting writer holds the gate, so new reader can not join the readers
+            Process newReader = startProcess(sharedLockFilePath, "shared", "read");
+            reader3 = newReader;
+            Future<Boolean> newReaderLocked = executor.submit(() -> awaitLine(newReader, "locked"));
+            Thread.sleep(1000);
+            Assert.assertFalse("new reader acquired lock while writer waits", newReaderLocked.isDone());
+
+            releaseLock(reader1);
+            releaseLock(reader2);
+
+            writer.get(10, TimeUnit.SECONDS);
+            Assert.assertTrue(newReaderLocked.get(10, TimeUnit.SECONDS));
+        } finally {
+            destroy(reader1, reader2, reader3);
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void blockedProcessIsHandedLockOnRelease() throws Exception {
+        String blockingLockFilePath = lockFilePath + ".blocking";
+        Process holder = startLockHolder(blockingLockFilePath, "blocking", "write");
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            // retry delay is far above the expected hand-off time, so polling would be noticed
+            CrossProcessCacheFileLock lock = new CrossProcessCacheFileLock(blockingLockFilePath,
+                    new FixedLockRetryPolicy(2000, 5), true, true, false);
+            Future<Long> acquireTime = executor.submit(() -> {
+                lock.lock();
+                long acquired = System.nanoTime();
+                lock.unlock();
+                return acquired;
+            });
+            Thread.sleep(500);
+            Assert.assertFalse("lock held by other process was acquired", acquireTime.isDone());
+
+            long released = System.nanoTime();
+            releaseLock(holder);
+
+            long handOffMillis = TimeUnit.NANOSECONDS.toMillis(acquireTime.get(10, TimeUnit.SECONDS) - released);
+            Assert.assertTrue("hand-off took " + handOffMillis + " ms", handOffMillis < 1000);
+        } finally {
+            destroy(holder);
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void blockedProcessGivesUpAtDeadline() throws Exception {
+        String blockingLockFilePath = lockFilePath + ".blocking";
+        Process holder = startLockHolder(blockingLockFilePath, "blocking", "write");
+        try {
+            // 500 ms timeout
+            CrossProcessCacheFileLock lock = new CrossProcessCacheFileLock(blockingLockFilePath,
+                    new FixedLockRetryPolicy(50, 10), true, true, false);
+
+            long start = System.nanoTime();
+            try {
+                lock.lock();
+                lock.unlock();
+                Assert.fail("lock is held by other process");
+            } catch (CacheFileLockAcquisitionException ex) {
+                // blocking call is released by closing the channel at the deadline
+                long waitMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                Assert.assertTrue("waited " + waitMillis + " ms", waitMillis >= 400 && waitMillis < 3000);
+            }
+
+            releaseLock(holder);
+            Assert.assertTrue(awaitLine(holder, "unlocked"));
+
+            // lock file state is reset, so the lock is usable after the timeout
+            lock.lock();
+            lock.unlock();
+            lock.readLock();
+            lock.unlock();
+        } finally {
+            destroy(holder);
+        }
+    }
+
+    @Test
+    public void lockFileOfLiveHolderIsNotReclaimed() throws Exception {
+        Process holder = startLockHolder(lockFilePath);
+        try {
+            // live holder record replaced by the record of a terminated process
+            String hostName = java.lang.management.ManagementFactory.getRuntimeMXBean().getName().split("@")[1];
+            Files.write(Paths.get(lockFilePath),
+                    ((Integer.MAX_VALUE - 1) + " " + hostName).getBytes(StandardCharsets.UTF_8));
+
+            CrossProcessCacheFileLock lock = new CrossProcessCacheFileLock(lockFilePath, 20, 10);
+            try {
+                lock.lock();
+                lock.unlock();
+                Assert.fail("lock is held by other process");
+            } catch (CacheFileLockAcquisitionException ex) {
+                // lock file locked by its holder is moved back
+                Assert.assertTrue(Files.exists(Paths.get(lockFilePath)));
+            }
+            try (Stream<Path> files = Files.list(Paths.get(lockFilePath).getParent())) {
+                Assert.assertFalse(files.anyMatch(file -> file.getFileName().toString()
+                        .startsWith(Paths.get(lockFilePath).getFileName() + ".stale.")));
+            }
+        } finally {
+            destroy(holder);
+        }
+    }
+
+    @Test
+    public void persistentLockFileDeletedByOtherProcessIsReopened() throws Exception {
+        String mixedLockFilePath = lockFilePath + ".mixed";
+        CrossProcessCacheFileLock lock = new CrossProcessCacheFileLock(mixedLockFilePath,
+                new FixedLockRetryPolicy(20, 10), false, false, true);
+        Process holder = null;
+        try {
+            lock.lock();
+            lock.unlock();
+
+            // process with non persistent lock file deletes the lock file on unlock
+            holder = startLockHolder(mixedLockFilePath);
+            releaseLock(holder);
+            Assert.assertTrue(awaitLine(holder, "unlocked"));
+            destroy(holder);
+            Assert.assertFalse(Files.exists(Paths.get(mixedLockFilePath)));
+
+            holder = startLockHolder(mixedLockFilePath);
+            try {
+                lock.lock();
+                lock.unlock();
+                Assert.fail("new lock file is held by other process");
+            } catch (CacheFileLockAcquisitionException ex) {
+                // lock of the deleted file is not taken as the lock
+            }
+
+            destroy(holder);
+            holder = null;
+            lock.lock();
+            lock.unlock();
+        } finally {
+            destroy(holder);
+            lock.close();
+            Files.deleteIfExists(Paths.get(mixedLockFilePath));
+        }
+    }
+
+    @Test
+    public void lockFileStateIsRemovedWithLastLock() {
+        String closedLockFilePath = lockFilePath + ".closed";
+        CrossProcessCacheFileLock lock1 = new CrossProcessCacheFileLock(closedLockFilePath, 100, 20);
+        CrossProcessCacheFileLock lock2 = new CrossProcessCacheFileLock(closedLockFilePath, 100, 20);
+
+        lock1.close();
+        lock1.close();
+        try {
+            new CrossProcessCacheFileLock(closedLockFilePath, new FixedLockRetryPolicy(100, 20), true, false, false);
+            Assert.fail("lock file state is still used by the other lock");
+        } catch (IllegalArgumentException ex) {
+            // state is kept
+        }
+
+        // other protocol can be used once the state is removed
+        lock2.close();
+        new CrossProcessCacheFileLock(closedLockFilePath, new FixedLockRetryPolicy(100, 20), true, false, false)
+                .close();
+    }
+
+    @Test
+    public void currentProcessIsAlive() {
+        long processId = Long.parseLong(
+                java.lang.management.ManagementFactory.getRuntimeMXBean().getName().split("@")[0]);
+
+        Assert.assertTrue(CrossProcessCacheFileLock.isProcessAlive(processId));
+    }
+
+    @Test
+    public void statisticsAreRecorded() throws Exception {
+        CrossProcessCacheFileLock lock = createLock();
+        LockStatistics before = lock.getStatistics();
+
+        lock.lock();
+        // nested acquisition is not counted
+        lock.readLock();
+        lock.unlock();
+        Thread.sleep(10);
+        lock.unlock();
+
+        lock.readLock();
+        lock.unlock();
+
+        LockStatistics after = lock.getStatistics();
+
+        Assert.assertEquals(2, after.getAcquisitions() - before.getAcquisitions());
+        Assert.assertEquals(0, after.getFailures() - before.getFailures());
+        Assert.assertTrue(after.getTotalHoldMicroseconds() - before.getTotalHoldMicroseconds() >= 10_000);
+        Assert.assertEquals(2, sum(after.getWaitTimeHistogram()) - sum(before.getWaitTimeHistogram()));
+        Assert.assertEquals(2, sum(after.getHoldTimeHistogram()) - sum(before.getHoldTimeHistogram()));
+        Assert.assertTrue(after.getHoldTimePercentileMicroseconds(100) >= 10_000);
+    }
+
+    private static Process startLockHolder(String... args) throws Exception {
+        Process holder = startProcess(args);
+        boolean locked = false;
+        try {
+            locked = awaitLine(holder, "locked");
+            Assert.assertTrue("lock holder process exited before taking the lock", locked);
+        } finally {
+            if (!locked) {
+                holder.destroyForcibly().waitFor();
+            }
+        }
+        return holder;
+    }
+
+    private static Process startProcess(String... args) throws IOException {
+        List<String> command = new ArrayList<>(Arrays.asList(
+                System.getProperty("java.home") + File.separator + "bin" + File.separator + "java",
+                "-cp", System.getProperty("java.class.path"),
+                CacheLockHolder.class.getName()));
+        command.addAll(Arrays.asList(args));
+
+        return new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .start();
+    }
+
+    /**
+     * @return True if the process printed the line, false if it exited without printing it
+     */
+    private static boolean awaitLine(Process process, String expectedLine) throws IOException {
+        BufferedReader output = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+        String line;
+        do {
+            line = output.readLine();
+        } while (line != null && !line.equals(expectedLine));
+
+        return line != null;
+    }
+
+    private static void releaseLock(Process holder) throws IOException {
+        holder.getOutputStream().write("release\n".getBytes(StandardCharsets.UTF_8));
+        holder.getOutputStream().flush();
+    }
+
+    private static void destroy(Process... processes) throws InterruptedException {
+        for (Process process : processes) {
+            if (process != null) {
+                process.destroyForcibly().waitFor();
+            }
+        }
+    }
+
+    private static long sum(long[] histogram) {
+        return java.util.Arrays.stream(histogram).sum();
+    }
+}
@@ -0,0 +1,102 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.aad.msal4jextensions;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of latencies in microseconds with log-linear buckets:
+ * each power of two range is split to 16 buckets, so relative error of percentiles is below 1/16.
+ * Histograms of different threads and processes are merged by adding up bucket counts.
+ */
+class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // exact buckets below SUB_BUCKETS, then SUB_BUCKETS buckets for each power of two up to 2^62
+    private static final int BUCKETS = (63 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    private static int getBucketIndex(long microseconds) {
+        if (microseconds < SUB_BUCKETS) {
+            return (int) Math.max(0, microseconds);
+        }
+        int magnitude = 63 - Long.numberOfLeadingZeros(microseconds) - SUB_BUCKET_BITS;
+        int subBucket = (int) (microseconds >>> magnitude) - SUB_BUCKETS;
+
+        return SUB_BUCKETS + magnitude * SUB_BUCKETS + subBucket;
+    }
+
+    private static long getBucketUpperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int magnitude = (index - SUB_BUCKETS) / SUB_BUCKETS;
+        int subBucket = (index - SUB_BUCKETS) % SUB_BUCKETS;
+
+        return ((long) (SUB_BUCKETS + subBucket + 1) << magnitude) - 1;
+    }
+
+    void record(long microseconds) {
+        counts.incrementAndGet(getBucketIndex(microseconds));
+    }
+
+    void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.addAndGet(i, other.counts.get(i));
+        }
+    }
+
+    long getCount() {
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            count += counts.get(i);
+        }
+        return count;
+    }
+
+    /**
+     * @return Upper bound of the bucket which contains the percentile, 0 if histogram is empty
+     */
+    long getPercentile(double percentile) {
+        long count = getCount();
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(count * percentile / 100));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return getBucketUpperBound(i);
+            }
+        }
+        return getBucketUpperBound(BUCKETS - 1);
+    }
+
+    /**
+     * @return Bucket counts separated by space
+     */
+    String serialize() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < BUCKETS; i++) {
+            if (i > 0) {
+                builder.append(' ');
+            }
+            builder.append(counts.get(i));
+        }
+        return builder.toString();
+    }
+
+    static LatencyHistogram deserialize(String data) {
+        LatencyHistogram histogram = new LatencyHistogram();
+        long[] values = Arrays.stream(data.trim().split(" ")).mapToLong(Long::parseLong).toArray();
+        for (int i = 0; i < Math.min(BUCKETS, values.length); i++) {
+            histogram.counts.set(i, values[i]);
+        }
+        return histogram;
+    }
+}
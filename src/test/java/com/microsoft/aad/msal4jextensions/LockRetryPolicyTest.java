@@ -0,0 +1,93 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.aad.msal4jextensions;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.file.Paths;
+
+public class LockRetryPolicyTest {
+
+    @Test
+    public void fixedPolicy() {
+        ILockRetryPolicy policy = new FixedLockRetryPolicy(100, 60);
+
+        Assert.assertEquals(60, policy.getRetryNumber());
+        Assert.assertEquals(100, policy.getRetryDelayMilliseconds(1));
+        Assert.assertEquals(100, policy.getRetryDelayMilliseconds(60));
+        Assert.assertEquals(6000, policy.getTimeoutMilliseconds());
+    }
+
+    @Test
+    public void exponentialBackoffPolicy() {
+        ILockRetryPolicy policy = new ExponentialBackoffLockRetryPolicy(10, 200, 10);
+
+        for (int i = 0; i < 100; i++) {
+            assertInRange(policy.getRetryDelayMilliseconds(1), 5, 10);
+            assertInRange(policy.getRetryDelayMilliseconds(3), 20, 40);
+            assertInRange(policy.getRetryDelayMilliseconds(10), 100, 200);
+        }
+        // 10 + 20 + 40 + 80 + 160 + 5 * 200
+        Assert.assertEquals(1310, policy.getTimeoutMilliseconds());
+    }
+
+    @Test
+    public void adaptivePolicy() {
+        AdaptiveLockRetryPolicy policy = new AdaptiveLockRetryPolicy(2, 500, 100);
+
+        for (int i = 0; i < 100; i++) {
+            assertInRange(policy.getRetryDelayMilliseconds(1), 2, 2);
+        }
+        for (int i = 0; i < 100; i++) {
+            policy.onLockReleased(150);
+        }
+        Assert.assertEquals(150, policy.getAverageHoldMilliseconds(), 1);
+        for (int i = 0; i < 100; i++) {
+            assertInRange(policy.getRetryDelayMilliseconds(1), 75, 150);
+        }
+        for (int i = 0; i < 100; i++) {
+            policy.onLockReleased(10000);
+        }
+        assertInRange(policy.getRetryDelayMilliseconds(1), 250, 500);
+        Assert.assertEquals(50000, policy.getTimeoutMilliseconds());
+    }
+
+    @Test
+    public void oneMillisecondDelayIsNotZero() {
+        ILockRetryPolicy exponentialPolicy = new ExponentialBackoffLockRetryPolicy(1, 1, 10);
+        ILockRetryPolicy adaptivePolicy = new AdaptiveLockRetryPolicy(1, 1, 10);
+
+        for (int i = 0; i < 100; i++) {
+            Assert.assertEquals(1, exponentialPolicy.getRetryDelayMilliseconds(1));
+            Assert.assertEquals(1, adaptivePolicy.getRetryDelayMilliseconds(1));
+        }
+    }
+
+    @Test
+    public void policyFactoryCreatesPolicyForEachLock() {
+        PersistenceSettings settings = PersistenceSettings.builder("testCacheFile", Paths.get("testCacheDirectory"))
+                .setLockRetryPolicyFactory(() -> new AdaptiveLockRetryPolicy(2, 500, 100))
+                .build();
+
+        ILockRetryPolicy policy = settings.getLockRetryPolicy();
+        Assert.assertTrue(policy instanceof AdaptiveLockRetryPolicy);
+        Assert.assertNotSame(policy, settings.getLockRetryPolicy());
+
+        ILockRetryPolicy sharedPolicy = new ExponentialBackoffLockRetryPolicy(10, 200, 10);
+        settings = PersistenceSettings.builder("testCacheFile", Paths.get("testCacheDirectory"))
+                .setLockRetryPolicy(sharedPolicy)
+                .build();
+        Assert.assertSame(sharedPolicy, settings.getLockRetryPolicy());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidPolicyArguments() {
+        new ExponentialBackoffLockRetryPolicy(100, 10, 5);
+    }
+
+    private void assertInRange(long value, long min, long max) {
+        Assert.assertTrue(value + " is not in range " + min + "-" + max, value >= min && value <= max);
+    }
+}
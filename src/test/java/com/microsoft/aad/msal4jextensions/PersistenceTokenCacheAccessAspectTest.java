@@ -0,0 +1,676 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.aad.msal4jextensions;
+
+import com.microsoft.aad.msal4jextensions.persistence.CompressingCacheAccessor;
+import com.sun.jna.Platform;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.management.ObjectName;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+public class PersistenceTokenCacheAccessAspectTest {
+
+    private Path cacheDirectoryPath;
+
+    @Before
+    public void init() throws IOException {
+        cacheDirectoryPath = Paths.get(System.getProperty("user.home"), "MSAL", "testAspectCache");
+        Files.deleteIfExists(cacheDirectoryPath.resolve("testCacheFile"));
+        Files.deleteIfExists(cacheDirectoryPath.resolve("testCacheFile.generation"));
+        Files.deleteIfExists(cacheDirectoryPath.resolve("testCacheFile.journal"));
+    }
+
+    @After
+    public void cleanup() throws IOException {
+        Files.deleteIfExists(cacheDirectoryPath.resolve("testCacheFile"));
+        Files.deleteIfExists(cacheDirectoryPath.resolve("testCacheFile.generation"));
+        Files.deleteIfExists(cacheDirectoryPath.resolve("testCacheFile.journal"));
+    }
+
+    private PersistenceSettings.Builder createPersistenceSettingsBuilder() {
+        return PersistenceSettings.builder("testCacheFile", cacheDirectoryPath)
+                .setMacKeychain("MsalTestService", "MsalTestAccount")
+                .setLinuxUseUnprotectedFileAsCacheStorage(true)
+                .setLockRetry(100, 20);
+    }
+
+    private static void access(PersistenceTokenCacheAccessAspect aspect, TestTokenCacheAccessContext context) {
+        aspect.beforeCacheAccess(context);
+        aspect.afterCacheAccess(context);
+    }
+
+    @Test
+    public void statisticsAreRecorded() throws IOException {
+        PersistenceTokenCacheAccessAspect aspect =
+                new PersistenceTokenCacheAccessAspect(createPersistenceSettingsBuilder().build());
+
+        TestTokenCacheAccessContext.TestTokenCache tokenCache = new TestTokenCacheAccessContext.TestTokenCache();
+        TestTokenCacheAccessContext writeContext = new TestTokenCacheAccessContext("client1", true, tokenCache);
+
+        aspect.beforeCacheAccess(writeContext);
+        tokenCache.data = "{\"AccessToken\":{}}";
+        aspect.afterCacheAccess(writeContext);
+
+        access(aspect, new TestTokenCacheAccessContext("client1", false, tokenCache));
+        access(aspect, new TestTokenCacheAccessContext("client2", false, tokenCache));
+
+        ICacheAccessStatisticsMXBean statistics = aspect.getCacheAccessStatistics();
+
+        // write access reloads the cache before writing it
+        Assert.assertEquals(1, statistics.getReadCount());
+        Assert.assertEquals(1, statistics.getWriteCount());
+        Assert.assertEquals(tokenCache.data.length(), statistics.getBytesWritten());
+        Assert.assertEquals(2, statistics.getSkippedReloadCount());
+        Assert.assertEquals(Long.valueOf(1), statistics.getWriteCountByClientId().get("client1"));
+        Assert.assertEquals(Long.valueOf(1), statistics.getSkippedReloadCountByClientId().get("client1"));
+        Assert.assertEquals(Long.valueOf(1), statistics.getSkippedReloadCountByClientId().get("client2"));
+        Assert.assertTrue(statistics.getLockAcquisitionCount() >= 1);
+    }
+
+    @Test
+    public void identicalCacheIsNotWritten() throws IOException {
+        PersistenceTokenCacheAccessAspect aspect =
+                new PersistenceTokenCacheAccessAspect(createPersistenceSettingsBuilder().build());
+        Path cacheFilePath = cacheDirectoryPath.resolve("testCacheFile");
+
+        TestTokenCacheAccessContext.TestTokenCache tokenCache = new TestTokenCacheAccessContext.TestTokenCache();
+        TestTokenCacheAccessContext writeContext = new TestTokenCacheAccessContext("client1", true, tokenCache);
+
+        aspect.beforeCacheAccess(writeContext);
+        tokenCache.data = "{\"AccessToken\":{}}";
+        aspect.afterCacheAccess(writeContext);
+
+        Object fileKey = Files.readAttributes(cacheFilePath, java.nio.file.attribute.BasicFileAttributes.class).fileKey();
+
+        // reported as changed, but serialized to the same content
+        access(aspect, writeContext);
+        access(aspect, writeContext);
+
+        ICacheAccessStatisticsMXBean statistics = aspect.getCacheAccessStatistics();
+        Assert.assertEquals(1, statistics.getWriteCount());
+        Assert.assertEquals(2, statistics.getSkippedWriteCount());
+        Assert.assertEquals(Long.valueOf(2), statistics.getSkippedWriteCountByClientId().get("client1"));
+
+        // file was not replaced by atomic write
+        Assert.assertEquals(fileKey,
+                Files.readAttributes(cacheFilePath, java.nio.file.attribute.BasicFileAttributes.class).fileKey());
+
+        // changed content is written
+        aspect.beforeCacheAccess(writeContext);
+        tokenCache.data = "{\"AccessToken\":{\"key\":{}}}";
+        aspect.afterCacheAccess(writeContext);
+
+        Assert.assertEquals(2, statistics.getWriteCount());
+        Assert.assertEquals(tokenCache.data, new String(Files.readAllBytes(cacheFilePath), "UTF-8"));
+    }
+
+    @Test
+    public void largeCacheIsWrittenInChunks() throws IOException {
+        PersistenceTokenCacheAccessAspect aspect =
+                new PersistenceTokenCacheAccessAspect(createPersistenceSettingsBuilder().build());
+        Path cacheFilePath = cacheDirectoryPath.resolve("testCacheFile");
+
+        TestTokenCacheAccessContext.TestTokenCache tokenCache = new TestTokenCacheAccessContext.TestTokenCache();
+        TestTokenCacheAccessContext writeContext = new TestTokenCacheAccessContext("client1", true, tokenCache);
+
+        // multi-byte characters and surrogate pairs spanning chunk boundaries
+        StringBuilder data = new StringBuilder("{\"AccessToken\":\"");
+        while (data.length() < 100 * 1024) {
+            data.append("a\u00e9\u20ac\ud83d\ude00");
+        }
+        data.append("\"}");
+
+        aspect.beforeCacheAccess(writeContext);
+        tokenCache.data = data.toString();
+        aspect.afterCacheAccess(writeContext);
+
+        byte[] expectedData = tokenCache.data.getBytes(StandardCharsets.UTF_8);
+        if (!Platform.isWindows()) {
+            Assert.assertArrayEquals(expectedData, Files.readAllBytes(cacheFilePath));
+        }
+        Assert.assertEquals(expectedData.length, aspect.getCacheAccessStatistics().getBytesWritten());
+
+        // content digest matches the one of the read data
+        access(aspect, writeContext);
+        Assert.assertEquals(1, aspect.getCacheAccessStatistics().getSkippedWriteCount());
+    }
+
+    @Test
+    public void cacheIsCompressed() throws IOException {
+        PersistenceTokenCacheAccessAspect aspect = new PersistenceTokenCacheAccessAspect(
+                createPersistenceSettingsBuilder().setCacheCompressionEnabled(true).build());
+        Path cacheFilePath = cacheDirectoryPath.resolve("testCacheFile");
+
+        // written before compression was enabled
+        Files.createDirectories(cacheDirectoryPath);
+        Files.write(cacheFilePath, "{\"AccessToken\":{}}".getBytes(StandardCharsets.UTF_8));
+
+        TestTokenCacheAccessContext.TestTokenCache tokenCache = new TestTokenCacheAccessContext.TestTokenCache();
+        TestTokenCacheAccessContext writeContext = new TestTokenCacheAccessContext("client1", true, tokenCache);
+
+        aspect.beforeCacheAccess(writeContext);
+        Assert.assertEquals("{\"AccessToken\":{}}", tokenCache.data);
+        tokenCache.data = "{\"AccessToken\":{\"key\":{}}}";
+        aspect.afterCacheAccess(writeContext);
+
+        if (!Platform.isWindows()) {
+            Assert.assertTrue(CompressingCacheAccessor.isCompressed(Files.readAllBytes(cacheFilePath)));
+        }
+
+        TestTokenCacheAccessContext.TestTokenCache otherTokenCache = new TestTokenCacheAccessContext.TestTokenCache();
+        PersistenceTokenCacheAccessAspect otherAspect = new PersistenceTokenCacheAccessAspect(
+                createPersistenceSettingsBuilder().setCacheCompressionEnabled(true).build());
+        access(otherAspect, new TestTokenCacheAccessContext("client1", false, otherTokenCache));
+
+        Assert.assertEquals(tokenCache.data, otherTokenCache.data);
+    }
+
+    @Test
+    public void identicalCacheIsNotDeserialized() throws IOException {
+        PersistenceTokenCacheAccessAspect aspect =
+                new PersistenceTokenCacheAccessAspect(createPersistenceSettingsBuilder().build());
+        Path cacheFilePath = cacheDirectoryPath.resolve("testCacheFile");
+
+        TestTokenCacheAccessContext.TestTokenCache tokenCache = new TestTokenCacheAccessContext.TestTokenCache();
+        TestTokenCacheAccessContext writeContext = new TestTokenCacheAccessContext("client1", true, tokenCache);
+        TestTokenCacheAccessContext readContext = new TestTokenCacheAccessContext("client1", false, tokenCache);
+
+        aspect.beforeCacheAccess(writeContext);
+        tokenCache.data = "{\"AccessToken\":{}}";
+        aspect.afterCacheAccess(writeContext);
+        int deserializeCount = tokenCache.deserializeCount;
+
+        // modified time is changed, but the content is not
+        Files.setLastModifiedTime(cacheFilePath,
+                java.nio.file.attribute.FileTime.fromMillis(System.currentTimeMillis() + 10_000));
+        access(aspect, readContext);
+
+        ICacheAccessStatisticsMXBean statistics = aspect.getCacheAccessStatistics();
+        Assert.assertEquals(deserializeCount, tokenCache.deserializeCount);
+        Assert.assertEquals(1, statistics.getSkippedDeserializeCount());
+
+        // other token cache did not load the content yet
+        TestTokenCacheAccessContext.TestTokenCache otherTokenCache = new TestTokenCacheAccessContext.TestTokenCache();
+        Files.setLastModifiedTime(cacheFilePath,
+                java.nio.file.attribute.FileTime.fromMillis(System.currentTimeMillis() + 20_000));
+        access(aspect, new TestTokenCacheAccessContext("client2", false, otherTokenCache));
+
+        Assert.assertEquals(1, otherTokenCache.deserializeCount);
+        Assert.assertEquals(tokenCache.data, otherTokenCache.data);
+        Assert.assertEquals(1, statistics.getSkippedDeserializeCount());
+    }
+
+    @Test
+    public void touchedFramedCacheFileIsNotReloaded() throws IOException {
+        PersistenceTokenCacheAccessAspect aspect = new PersistenceTokenCacheAccessAspect(
+                createPersistenceSettingsBuilder().setCacheFileHeaderEnabled(true).build());
+        PersistenceTokenCacheAccessAspect otherAspect = new PersistenceTokenCacheAccessAspect(
+                createPersistenceSettingsBuilder().setCacheFileHeaderEnabled(true).build());
+        Path cacheFilePath = cacheDirectoryPath.resolve("testCacheFile");
+
+        TestTokenCacheAccessContext.TestTokenCache tokenCache = new TestTokenCacheAccessContext.TestTokenCache();
+        TestTokenCacheAccessContext writeContext = new TestTokenCacheAccessContext("client1", true, tokenCache);
+        TestTokenCacheAccessContext readContext = new TestTokenCacheAccessContext("client1", false, tokenCache);
+
+        aspect.beforeCacheAccess(writeContext);
+        tokenCache.data = "{\"AccessToken\":{}}";
+        aspect.afterCacheAccess(writeContext);
+
+        // modified time is changed, but the generation in the header is not
+        Files.setLastModifiedTime(cacheFilePath,
+                java.nio.file.attribute.FileTime.fromMillis(System.currentTimeMillis() + 10_000));
+        access(aspect, readContext);
+
+        Assert.assertEquals(1, aspect.getCacheAccessStatistics().getSkippedReloadCount());
+
+        // rewrite by the other aspect changes the generation
+        TestTokenCacheAccessContext.TestTokenCache otherTokenCache = new TestTokenCacheAccessContext.TestTokenCache();
+        TestTokenCacheAccessContext otherWriteContext =
+                new TestTokenCacheAccessContext("client2", true, otherTokenCache);
+        otherAspect.beforeCacheAccess(otherWriteContext);
+        otherTokenCache.data = "{\"AccessToken\":{\"key\":{}}}";
+        otherAspect.afterCacheAccess(otherWriteContext);
+
+        access(aspect, readContext);
+
+        Assert.assertEquals(otherTokenCache.data, tokenCache.data);
+        Assert.assertEquals(1, aspect.getCacheAccessStatistics().getSkippedReloadCount());
+    }
+
+    @Test
+    public void changeWithinModifiedTimeTickIsDetected() throws IOException {
+        PersistenceTokenCacheAccessAspect aspect =
+                new PersistenceTokenCacheAccessAspect(createPersistenceSettingsBuilder().build());
+        PersistenceTokenCacheAccessAspect otherAspect =
+                new PersistenceTokenCacheAccessAspect(createPersistenceSettingsBuilder().build());
+        Path cacheFilePath = cacheDirectoryPath.resolve("testCacheFile");
+
+        TestTokenCacheAccessContext.TestTokenCache tokenCache = new TestTokenCacheAccessContext.TestTokenCache();
+        TestTokenCacheAccessContext writeContext = new TestTokenCacheAccessContext("client1", true, tokenCache);
+        TestTokenCacheAccessContext readContext = new TestTokenCacheAccessContext("client1", false, tokenCache);
+
+        aspect.beforeCacheAccess(writeContext);
+        tokenCache.data = "{\"AccessToken\":{}}";
+        aspect.afterCacheAccess(writeContext);
+        java.nio.file.attribute.FileTime modifiedTime = Files.getLastModifiedTime(cacheFilePath);
+
+        TestTokenCacheAccessContext.TestTokenCache otherTokenCache = new TestTokenCacheAccessContext.TestTokenCache();
+        TestTokenCacheAccessContext otherWriteContext =
+                new TestTokenCacheAccessContext("client2", true, otherTokenCache);
+        otherAspect.beforeCacheAccess(otherWriteContext);
+        otherTokenCache.data = "{\"AccessToken\":{\"key\":{}}}";
+        otherAspect.afterCacheAccess(otherWriteContext);
+
+        // the other write happened within the same tick of modified time
+        Files.setLastModifiedTime(cacheFilePath, modifiedTime);
+
+        access(aspect, readContext);
+
+        Assert.assertEquals(otherTokenCache.data, tokenCache.data);
+        Assert.assertEquals(0, aspect.getCacheAccessStatistics().getSkippedReloadCount());
+    }
+
+    @Test
+    public void changeIsDetectedByCacheDirectoryWatch() throws Exception {
+        PersistenceSettings persistenceSettings = createPersistenceSettingsBuilder()
+                .setCacheDirectoryWatchEnabled(true)
+                .build();
+        int watcherCount = CacheDirectoryWatcher.getWatcherCount();
+        PersistenceTokenCacheAccessAspect aspect = new PersistenceTokenCacheAccessAspect(persistenceSettings);
+        PersistenceTokenCacheAccessAspect otherAspect = new PersistenceTokenCacheAccessAspect(persistenceSettings);
+        try {
+            // both aspects share the watcher of the cache directory
+            Assert.assertEquals(watcherCount + 1, CacheDirectoryWatcher.getWatcherCount());
+
+            TestTokenCacheAccessContext.TestTokenCache tokenCache = new TestTokenCacheAccessContext.TestTokenCache();
+            TestTokenCacheAccessContext writeContext = new TestTokenCacheAccessContext("client1", true, tokenCache);
+
+            TestTokenCacheAccessContext.TestTokenCache otherTokenCache =
+                    new TestTokenCacheAccessContext.TestTokenCache();
+            TestTokenCacheAccessContext otherReadContext =
+                    new TestTokenCacheAccessContext("client2", false, otherTokenCache);
+
+            aspect.beforeCacheAccess(writeContext);
+            tokenCache.data = "{\"AccessToken\":{}}";
+            aspect.afterCacheAccess(writeContext);
+
+            awaitCacheData(otherAspect, otherReadContext, tokenCache.data);
+
+            aspect.beforeCacheAccess(writeContext);
+            tokenCache.data = "{\"AccessToken\":{\"key\":{}}}";
+            aspect.afterCacheAccess(writeContext);
+
+            awaitCacheData(otherAspect, otherReadContext, tokenCache.data);
+
+            // once pending notifications are delivered, unchanged cache is not reloaded
+            long deadline = System.currentTimeMillis() + 10000;
+            long skippedReloadCount = otherAspect.getCacheAccessStatistics().getSkippedReloadCount();
+            while (otherAspect.getCacheAccessStatistics().getSkippedReloadCount() == skippedReloadCount) {
+                Assert.assertTrue("Reload was not skipped", System.currentTimeMillis() < deadline);
+                Thread.sleep(10);
+                access(otherAspect, otherReadContext);
+            }
+        } finally {
+            aspect.stopCacheDirectoryWatch();
+            otherAspect.stopCacheDirectoryWatch();
+        }
+        Assert.assertEquals(watcherCount, CacheDirectoryWatcher.getWatcherCount());
+    }
+
+    @Test
+    public void cacheChangeListenerIsNotified() throws Exception {
+        PersistenceSettings persistenceSettings = createPersistenceSettingsBuilder().build();
+        int watcherCount = CacheDirectoryWatcher.getWatcherCount();
+        PersistenceTokenCacheAccessAspect aspect = new PersistenceTokenCacheAccessAspect(persistenceSettings);
+        PersistenceTokenCacheAccessAspect otherAspect = new PersistenceTokenCacheAccessAspect(persistenceSettings);
+
+        BlockingQueue<CacheChangeEvent> events = new LinkedBlockingQueue<>();
+        ICacheChangeListener listener = events::add;
+        otherAspect.addCacheChangeListener(listener);
+        try {
+            TestTokenCacheAccessContext.TestTokenCache tokenCache = new TestTokenCacheAccessContext.TestTokenCache();
+            TestTokenCacheAccessContext writeContext = new TestTokenCacheAccessContext("client1", true, tokenCache);
+
+            aspect.beforeCacheAccess(writeContext);
+            tokenCache.data = "{\"AccessToken\":{}}";
+            aspect.afterCacheAccess(writeContext);
+
+            CacheChangeEvent event = events.poll(10, TimeUnit.SECONDS);
+            Assert.assertNotNull("Listener was not notified", event);
+            Assert.assertEquals(-1, event.getGeneration());
+            Assert.assertEquals(tokenCache.data.length(), event.getSize());
+            Assert.assertEquals(cacheDirectoryPath.resolve("testCacheFile").toString(), event.getCacheFilePath());
+        } finally {
+            otherAspect.removeCacheChangeListener(listener);
+        }
+        Assert.assertEquals(watcherCount, CacheDirectoryWatcher.getWatcherCount());
+    }
+
+    @Test
+    public void changedCacheIsPrefetched() throws Exception {
+        PersistenceTokenCacheAccessAspect aspect =
+                new PersistenceTokenCacheAccessAspect(createPersistenceSettingsBuilder().build());
+        PersistenceTokenCacheAccessAspect otherAspect = new PersistenceTokenCacheAccessAspect(
+                createPersistenceSettingsBuilder()
+                        .setPrefetchEnabled(true)
+                        .setPrefetchMaxStalenessMillis(60000)
+                        .build());
+        try {
+            TestTokenCacheAccessContext.TestTokenCache tokenCache = new TestTokenCacheAccessContext.TestTokenCache();
+            TestTokenCacheAccessContext writeContext = new TestTokenCacheAccessContext("client1", true, tokenCache);
+
+            TestTokenCacheAccessContext.TestTokenCache otherTokenCache =
+                    new TestTokenCacheAccessContext.TestTokenCache();
+            TestTokenCacheAccessContext otherReadContext =
+                    new TestTokenCacheAccessContext("client2", false, otherTokenCache);
+
+            aspect.beforeCacheAccess(writeContext);
+            tokenCache.data = "{\"AccessToken\":{}}";
+            aspect.afterCacheAccess(writeContext);
+
+            ICacheAccessStatisticsMXBean statistics = otherAspect.getCacheAccessStatistics();
+            long deadline = System.currentTimeMillis() + 10000;
+            while (statistics.getPrefetchCount() == 0) {
+                Assert.assertTrue("Cache was not prefetched", System.currentTimeMillis() < deadline);
+                Thread.sleep(10);
+            }
+
+            access(otherAspect, otherReadContext);
+
+            Assert.assertEquals(tokenCache.data, otherTokenCache.data);
+            Assert.assertEquals(1, statistics.getPrefetchedReloadCount());
+            Assert.assertEquals(0, statistics.getReadCount());
+        } finally {
+            otherAspect.stopCacheDirectoryWatch();
+        }
+    }
+
+    @Test
+    public void writesAreCoalescedByWriteBehind() throws Exception {
+        PersistenceTokenCacheAccessAspect aspect = new PersistenceTokenCacheAccessAspect(
+                createPersistenceSettingsBuilder()
+                        .setWriteBehindEnabled(true)
+                        .setWriteBehindWindowMillis(60000)
+                        .build());
+        Path cacheFilePath = cacheDirectoryPath.resolve("testCacheFile");
+
+        TestTokenCacheAccessContext.TestTokenCache tokenCache = new TestTokenCacheAccessContext.TestTokenCache();
+        TestTokenCacheAccessContext writeContext = new TestTokenCacheAccessContext("client1", true, tokenCache);
+
+        for (int i = 0; i < 3; i++) {
+            aspect.beforeCacheAccess(writeContext);
+            tokenCache.data = "{\"AccessToken\":{\"key" + i + "\":{}}}";
+            aspect.afterCacheAccess(writeContext);
+        }
+        ICacheAccessStatisticsMXBean statistics = aspect.getCacheAccessStatistics();
+        Assert.assertEquals(0, statistics.getWriteCount());
+        Assert.assertEquals(2, statistics.getCoalescedWriteCount());
+
+        // pending changes are not discarded by reload
+        aspect.beforeCacheAccess(new TestTokenCacheAccessContext("client1", false, tokenCache));
+        Assert.assertEquals("{\"AccessToken\":{\"key2\":{}}}", tokenCache.data);
+
+        aspect.flush();
+        Assert.assertEquals(1, statistics.getWriteCount());
+        Assert.assertEquals(tokenCache.data, new String(Files.readAllBytes(cacheFilePath), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void writeBehindMergesChangesOfOtherProcess() throws Exception {
+        PersistenceTokenCacheAccessAspect aspect = new PersistenceTokenCacheAccessAspect(
+                createPersistenceSettingsBuilder()
+                        .setWriteBehindEnabled(true)
+                        .setWriteBehindWindowMillis(60000)
+                        .build());
+        PersistenceTokenCacheAccessAspect otherAspect =
+                new PersistenceTokenCacheAccessAspect(createPersistenceSettingsBuilder().build());
+
+        TestTokenCacheAccessContext.TestTokenCache tokenCache = new TestTokenCacheAccessContext.TestTokenCache();
+        TestTokenCacheAccessContext writeContext = new TestTokenCacheAccessContext("client1", true, tokenCache);
+        TestTokenCacheAccessContext.TestTokenCache otherTokenCache = new TestTokenCacheAccessContext.TestTokenCache();
+        TestTokenCacheAccessContext otherWriteContext =
+                new TestTokenCacheAccessContext("client2", true, otherTokenCache);
+
+        otherAspect.beforeCacheAccess(otherWriteContext);
+        otherTokenCache.data = "{\"AccessToken\":{\"key1\":{},\"key2\":{}}}";
+        otherAspect.afterCacheAccess(otherWriteContext);
+
+        aspect.beforeCacheAccess(writeContext);
+        tokenCache.data = "{\"AccessToken\":{\"key2\":{},\"key3\":{}}}";
+        aspect.afterCacheAccess(writeContext);
+
+        // other process changes the cache while the write is pending
+        otherAspect.beforeCacheAccess(otherWriteContext);
+        otherTokenCache.data = "{\"AccessToken\":{\"key1\":{},\"key2\":{},\"key4\":{}}}";
+        otherAspect.afterCacheAccess(otherWriteContext);
+
+        aspect.flush();
+        Assert.assertEquals("{\"AccessToken\":{\"key2\":{},\"key4\":{},\"key3\":{}}}", new String(
+                Files.readAllBytes(cacheDirectoryPath.resolve("testCacheFile")), StandardCharsets.UTF_8));
+
+        // merged cache is loaded on the next access
+        access(aspect, new TestTokenCacheAccessContext("client1", false, tokenCache));
+        Assert.assertEquals("{\"AccessToken\":{\"key2\":{},\"key4\":{},\"key3\":{}}}", tokenCache.data);
+    }
+
+    @Test
+    public void writeBehindWritesAfterWindow() throws Exception {
+        PersistenceTokenCacheAccessAspect aspect = new PersistenceTokenCacheAccessAspect(
+                createPersistenceSettingsBuilder()
+                        .setWriteBehindEnabled(true)
+                        .setWriteBehindWindowMillis(10)
+                        .build());
+
+        TestTokenCacheAccessContext.TestTokenCache tokenCache = new TestTokenCacheAccessContext.TestTokenCache();
+        TestTokenCacheAccessContext writeContext = new TestTokenCacheAccessContext("client1", true, tokenCache);
+
+        aspect.beforeCacheAccess(writeContext);
+        tokenCache.data = "{\"AccessToken\":{}}";
+        aspect.afterCacheAccess(writeContext);
+
+        long deadline = System.currentTimeMillis() + 10000;
+        while (aspect.getCacheAccessStatistics().getWriteCount() == 0) {
+            Assert.assertTrue("Cache was not written", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(tokenCache.data, new String(
+                Files.readAllBytes(cacheDirectoryPath.resolve("testCacheFile")), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void changesAreJournaled() throws IOException {
+        PersistenceSettings persistenceSettings = createPersistenceSettingsBuilder()
+                .setJournalEnabled(true)
+                .build();
+        PersistenceTokenCacheAccessAspect aspect = new PersistenceTokenCacheAccessAspect(persistenceSettings);
+        PersistenceTokenCacheAccessAspect otherAspect = new PersistenceTokenCacheAccessAspect(persistenceSettings);
+
+        TestTokenCacheAccessContext.TestTokenCache tokenCache = new TestTokenCacheAccessContext.TestTokenCache();
+        TestTokenCacheAccessContext writeContext = new TestTokenCacheAccessContext("client1", true, tokenCache);
+
+        TestTokenCacheAccessContext.TestTokenCache otherTokenCache = new TestTokenCacheAccessContext.TestTokenCache();
+        TestTokenCacheAccessContext otherReadContext =
+                new TestTokenCacheAccessContext("client2", false, otherTokenCache);
+
+        aspect.beforeCacheAccess(writeContext);
+        tokenCache.data = "{\"AccessToken\":{\"a\":{}}}";
+        aspect.afterCacheAccess(writeContext);
+
+        aspect.beforeCacheAccess(writeContext);
+        tokenCache.data = "{\"AccessToken\":{\"a\":{},\"b\":{}}}";
+        aspect.afterCacheAccess(writeContext);
+
+        Assert.assertTrue(Files.size(cacheDirectoryPath.resolve("testCacheFile.journal")) > 0);
+
+        access(otherAspect, otherReadContext);
+        Assert.assertEquals("{\"AccessToken\":{\"a\":{},\"b\":{}}}", otherTokenCache.data);
+    }
+
+    private void awaitCacheData(PersistenceTokenCacheAccessAspect aspect,
+                                TestTokenCacheAccessContext context,
+                                String expectedData) throws InterruptedException {
+        // change notification is delivered asynchronously
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!expectedData.equals(context.tokenCache().serialize())) {
+            Assert.assertTrue("Change of the cache was not detected", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+            access(aspect, context);
+        }
+    }
+
+    @Test
+    public void changeIsDetectedByGenerationFile() throws IOException {
+        PersistenceSettings persistenceSettings = createPersistenceSettingsBuilder()
+                .setGenerationFileEnabled(true)
+                .build();
+        PersistenceTokenCacheAccessAspect aspect = new PersistenceTokenCacheAccessAspect(persistenceSettings);
+        PersistenceTokenCacheAccessAspect otherAspect = new PersistenceTokenCacheAccessAspect(persistenceSettings);
+
+        Assert.assertTrue(Files.exists(cacheDirectoryPath.resolve("testCacheFile.generation")));
+
+        TestTokenCacheAccessContext.TestTokenCache tokenCache = new TestTokenCacheAccessContext.TestTokenCache();
+        TestTokenCacheAccessContext writeContext = new TestTokenCacheAccessContext("client1", true, tokenCache);
+
+        TestTokenCacheAccessContext.TestTokenCache otherTokenCache = new TestTokenCacheAccessContext.TestTokenCache();
+        TestTokenCacheAccessContext otherReadContext =
+                new TestTokenCacheAccessContext("client2", false, otherTokenCache);
+
+        aspect.beforeCacheAccess(writeContext);
+        tokenCache.data = "{\"AccessToken\":{}}";
+        aspect.afterCacheAccess(writeContext);
+
+        access(otherAspect, otherReadContext);
+        Assert.assertEquals(tokenCache.data, otherTokenCache.data);
+        Assert.assertEquals(0, otherAspect.getCacheAccessStatistics().getSkippedReloadCount());
+
+        access(otherAspect, otherReadContext);
+        Assert.assertEquals(1, otherAspect.getCacheAccessStatistics().getSkippedReloadCount());
+
+        aspect.beforeCacheAccess(writeContext);
+        tokenCache.data = "{\"AccessToken\":{\"key\":{}}}";
+        aspect.afterCacheAccess(writeContext);
+
+        access(otherAspect, otherReadContext);
+        Assert.assertEquals(tokenCache.data, otherTokenCache.data);
+        Assert.assertEquals(1, otherAspect.getCacheAccessStatistics().getSkippedReloadCount());
+    }
+
+    @Test
+    public void changeIsDetectedAfterGenerationFileIsClosed() throws IOException {
+        PersistenceSettings persistenceSettings = createPersistenceSettingsBuilder()
+                .setGenerationFileEnabled(true)
+                .build();
+        PersistenceTokenCacheAccessAspect aspect = new PersistenceTokenCacheAccessAspect(persistenceSettings);
+        PersistenceTokenCacheAccessAspect otherAspect = new PersistenceTokenCacheAccessAspect(persistenceSettings);
+
+        TestTokenCacheAccessContext.TestTokenCache tokenCache = new TestTokenCacheAccessContext.TestTokenCache();
+        TestTokenCacheAccessContext writeContext = new TestTokenCacheAccessContext("client1", true, tokenCache);
+
+        TestTokenCacheAccessContext.TestTokenCache otherTokenCache = new TestTokenCacheAccessContext.TestTokenCache();
+        TestTokenCacheAccessContext otherReadContext =
+                new TestTokenCacheAccessContext("client2", false, otherTokenCache);
+
+        aspect.beforeCacheAccess(writeContext);
+        tokenCache.data = "{\"AccessToken\":{}}";
+        aspect.afterCacheAccess(writeContext);
+
+        access(otherAspect, otherReadContext);
+        Assert.assertEquals(tokenCache.data, otherTokenCache.data);
+
+        // cache file is checked instead
+        otherAspect.closeCacheGenerationFile();
+
+        aspect.beforeCacheAccess(writeContext);
+        tokenCache.data = "{\"AccessToken\":{\"key\":{}}}";
+        aspect.afterCacheAccess(writeContext);
+
+        access(otherAspect, otherReadContext);
+        Assert.assertEquals(tokenCache.data, otherTokenCache.data);
+
+        access(otherAspect, otherReadContext);
+        Assert.assertEquals(1, otherAspect.getCacheAccessStatistics().getSkippedReloadCount());
+    }
+
+    @Test
+    public void statisticsMBeanIsRegistered() throws Exception {
+        PersistenceTokenCacheAccessAspect aspect = new PersistenceTokenCacheAccessAspect(
+                createPersistenceSettingsBuilder().setStatisticsMBeanEnabled(true).build());
+
+        ObjectName query = new ObjectName("com.microsoft.aad.msal4jextensions:type=PersistenceTokenCacheAccessAspect,*");
+        Set<ObjectName> names = ManagementFactory.getPlatformMBeanServer().queryNames(query, null);
+        Assert.assertEquals(1, names.size());
+
+        ObjectName name = names.iterator().next();
+        Assert.assertEquals(cacheDirectoryPath + File.separator + "testCacheFile",
+                ManagementFactory.getPlatformMBeanServer().getAttribute(name, "CacheFilePath"));
+        Assert.assertEquals(0L, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "WriteCount"));
+
+        aspect.unregisterStatisticsMBean();
+        Assert.assertTrue(ManagementFactory.getPlatformMBeanServer().queryNames(query, null).isEmpty());
+    }
+
+    @Test
+    public void flightRecorderEventsAreEmitted() throws Exception {
+        PersistenceTokenCacheAccessAspect aspect =
+                new PersistenceTokenCacheAccessAspect(createPersistenceSettingsBuilder().build());
+
+        TestTokenCacheAccessContext.TestTokenCache tokenCache = new TestTokenCacheAccessContext.TestTokenCache();
+
+        Path recordingPath = Files.createTempFile("msal4jextensions", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("com.microsoft.aad.msal4jextensions.LockAcquire");
+            recording.enable("com.microsoft.aad.msal4jextensions.Read");
+            recording.enable("com.microsoft.aad.msal4jextensions.Write");
+            recording.enable("com.microsoft.aad.msal4jextensions.Serialize");
+            recording.disable("com.microsoft.aad.msal4jextensions.Deserialize");
+            recording.start();
+
+            TestTokenCacheAccessContext writeContext = new TestTokenCacheAccessContext("client1", true, tokenCache);
+            aspect.beforeCacheAccess(writeContext);
+            tokenCache.data = "{\"AccessToken\":{}}";
+            aspect.afterCacheAccess(writeContext);
+
+            recording.stop();
+            recording.dump(recordingPath);
+
+            List<RecordedEvent> events = RecordingFile.readAllEvents(recordingPath);
+            List<String> eventNames = events.stream()
+                    .map(event -> event.getEventType().getName())
+                    .collect(Collectors.toList());
+
+            Assert.assertTrue(eventNames.contains("com.microsoft.aad.msal4jextensions.LockAcquire"));
+            Assert.assertTrue(eventNames.contains("com.microsoft.aad.msal4jextensions.Read"));
+            Assert.assertTrue(eventNames.contains("com.microsoft.aad.msal4jextensions.Write"));
+            Assert.assertTrue(eventNames.contains("com.microsoft.aad.msal4jextensions.Serialize"));
+            // disabled in the recording
+            Assert.assertFalse(eventNames.contains("com.microsoft.aad.msal4jextensions.Deserialize"));
+
+            RecordedEvent writeEvent = events.stream()
+                    .filter(event -> event.getEventType().getName().endsWith(".Write"))
+                    .findFirst().get();
+            Assert.assertEquals(tokenCache.data.length(), writeEvent.getInt("size"));
+        } finally {
+            Files.deleteIfExists(recordingPath);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+// Copyright (c) Microsoft Corporation. All rights reserved.
+// Licensed under the MIT License.
+
+package com.microsoft.aad.msal4jextensions;
+
+import com.microsoft.aad.msal4j.IAccount;
+import com.microsoft.aad.msal4j.ITokenCache;
+import com.microsoft.aad.msal4j.ITokenCacheAccessContext;
+
+/**
+ * Cache access context backed by in-memory serialized cache
+ */
+class TestTokenCacheAccessContext implements ITokenCacheAccessContext {
+
+    private final String clientId;
+    private final boolean cacheChanged;
+    private final TestTokenCache tokenCache;
+
+    static class TestTokenCache implements ITokenCache {
+        String data = "{}";
+        int deserializeCount;
+
+        @Override
+        public void deserialize(String data) {
+            this.data = data;
+            deserializeCount++;
+        }
+
+        @Override
+        public String serialize() {
+            return data;
+        }
+    }
+
+    TestTokenCacheAccessContext(String clientId, boolean cacheChanged, TestTokenCache tokenCache) {
+        this.clientId = clientId;
+        this.cacheChanged = cacheChanged;
+        this.tokenCache = tokenCache;
+    }
+
+    @Override
+    public TestTokenCache tokenCache() {
+        return tokenCache;
+    }
+
+    @Override
+    public String clientId() {
+        return clientId;
+    }
+
+    @Override
+    public IAccount account() {
+        return null;
+    }
+
+    @Override
+    public boolean hasCacheChanged() {
+        return cacheChanged;
+    }
+}